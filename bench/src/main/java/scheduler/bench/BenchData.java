@@ -0,0 +1,109 @@
+package scheduler.bench;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.tools.ScratchDatabase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Creates a scratch database for one benchmark fork and fills it with generated users,
+ * availability and appointment history. Every fork is a new JVM, so each parameter combination
+ * gets its own file; the file is deleted when the fork exits.
+ */
+final class BenchData {
+
+    static final String VACCINE = "benchvax";
+    static final String PATIENT = "bench_patient";
+    static final String CAREGIVER = "bench_caregiver0";
+    static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+
+    private static final int BATCH = 1000;
+
+    private BenchData() {
+    }
+
+    // caregivers each free on every one of days dates; appointments of history spread over them
+    static void create(int caregivers, int days, int appointments, int doses) throws IOException, SQLException {
+        Path dir = Files.createTempDirectory("scheduler-bench");
+        Path database = dir.resolve("bench.db");
+        database.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+        ScratchDatabase.create(database);
+
+        byte[] blank = new byte[16];
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement caregiver = lease.prepareStatement("INSERT INTO Caregivers VALUES (?, ?, ?)");
+            for (int i = 0; i < caregivers; i++) {
+                caregiver.setString(1, caregiverName(i));
+                caregiver.setBytes(2, blank);
+                caregiver.setBytes(3, blank);
+                caregiver.addBatch();
+            }
+            caregiver.executeBatch();
+
+            PreparedStatement patient = lease.prepareStatement("INSERT INTO Patients VALUES (?, ?, ?)");
+            patient.setString(1, PATIENT);
+            patient.setBytes(2, blank);
+            patient.setBytes(3, blank);
+            patient.executeUpdate();
+
+            PreparedStatement availability = lease.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)");
+            int pending = 0;
+            for (int day = 0; day < days; day++) {
+                Date date = day(day);
+                for (int i = 0; i < caregivers; i++) {
+                    availability.setDate(1, date);
+                    availability.setString(2, caregiverName(i));
+                    availability.addBatch();
+                    if (++pending == BATCH) {
+                        availability.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            availability.executeBatch();
+
+            // history sits before the first bookable day so it never takes a free slot
+            PreparedStatement appointment = lease.prepareStatement(
+                    "INSERT INTO Appointments VALUES (?, ?, ?, ?, ?)");
+            pending = 0;
+            for (int id = 1; id <= appointments; id++) {
+                appointment.setInt(1, id);
+                appointment.setDate(2, Date.valueOf(FIRST_DAY.minusDays(1 + id % 365)));
+                appointment.setString(3, caregiverName(id % caregivers));
+                appointment.setString(4, PATIENT);
+                appointment.setString(5, VACCINE);
+                appointment.addBatch();
+                if (++pending == BATCH) {
+                    appointment.executeBatch();
+                    pending = 0;
+                }
+            }
+            appointment.executeBatch();
+
+            PreparedStatement vaccine = lease.prepareStatement("INSERT INTO Vaccines VALUES (?, ?)");
+            vaccine.setString(1, VACCINE);
+            vaccine.setInt(2, doses);
+            vaccine.executeUpdate();
+            con.commit();
+        }
+    }
+
+    static String caregiverName(int i) {
+        return "bench_caregiver" + i;
+    }
+
+    static Date day(int offset) {
+        return Date.valueOf(FIRST_DAY.plusDays(offset));
+    }
+}
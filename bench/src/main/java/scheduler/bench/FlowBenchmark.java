@@ -0,0 +1,91 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Scheduler;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.session.Session;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read-only command flows, run through Scheduler.execute exactly as a client's input line
+ * would be, against a seeded scratch database. Output goes to a discarding writer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlowBenchmark {
+
+    private static final int DAYS = 30;
+
+    @Param({"10", "1000"})
+    public int caregivers;
+
+    @Param({"1000", "100000"})
+    public int appointments;
+
+    private Session patient;
+    private Session caregiver;
+    private String[] searches;
+    private String twoWeeks;
+    private String lastPage;
+    private int next = 0;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchData.create(caregivers, DAYS, appointments, 1_000_000);
+        Scheduler.warmUp();
+        patient = new Session(new PrintWriter(Writer.nullWriter()), false);
+        patient.login(new Patient.PatientBuilder(BenchData.PATIENT, new byte[16], new byte[16]).build(), null);
+        caregiver = new Session(new PrintWriter(Writer.nullWriter()), false);
+        caregiver.login(new Caregiver.CaregiverBuilder(BenchData.CAREGIVER, new byte[16], new byte[16]).build(), null);
+        searches = new String[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            searches[day] = "search_caregiver_schedule " + BenchData.day(day);
+        }
+        twoWeeks = "search_caregiver_schedule " + BenchData.day(0) + " " + BenchData.day(13);
+        lastPage = "show_appointments - - 100 " + Math.max(appointments - 100, 0);
+    }
+
+    @Benchmark
+    public boolean searchCaregiverSchedule() {
+        next = (next + 1) % DAYS;
+        return Scheduler.execute(patient, searches[next]);
+    }
+
+    @Benchmark
+    public boolean searchCaregiverScheduleTwoWeeks() {
+        return Scheduler.execute(patient, twoWeeks);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsFirstPage() {
+        return Scheduler.execute(patient, "show_appointments");
+    }
+
+    @Benchmark
+    public boolean showAppointmentsLastPage() {
+        return Scheduler.execute(patient, lastPage);
+    }
+
+    @Benchmark
+    public boolean showAppointmentsCaregiver() {
+        return Scheduler.execute(caregiver, "show_appointments");
+    }
+}
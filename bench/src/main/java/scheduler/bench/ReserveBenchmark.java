@@ -0,0 +1,88 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Scheduler;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.model.Patient;
+import scheduler.session.Session;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reserve flow end to end. Every reservation consumes a slot, so each iteration is a batch
+ * of BATCH reservations on a new date that the iteration setup has just opened for every
+ * caregiver; the score is the time for the whole batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = ReserveBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = ReserveBenchmark.BATCH)
+@Fork(1)
+public class ReserveBenchmark {
+
+    static final int BATCH = 100;
+
+    // at least BATCH, so every reservation in a batch can be booked
+    @Param({"100", "1000"})
+    public int caregivers;
+
+    @Param({"1000", "100000"})
+    public int appointments;
+
+    private Session patient;
+    private int iteration = 0;
+    private String command;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchData.create(caregivers, 1, appointments, 1_000_000);
+        Scheduler.warmUp();
+        patient = new Session(new PrintWriter(Writer.nullWriter()), false);
+        patient.login(new Patient.PatientBuilder(BenchData.PATIENT, new byte[16], new byte[16]).build(), null);
+    }
+
+    @Setup(Level.Iteration)
+    public void openDate() throws Exception {
+        Date date = BenchData.day(++iteration);
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement statement = lease.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)");
+            for (int i = 0; i < caregivers; i++) {
+                statement.setDate(1, date);
+                statement.setString(2, BenchData.caregiverName(i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+        }
+        for (int i = 0; i < caregivers; i++) {
+            AvailabilityIndex.getInstance().add(date, BenchData.caregiverName(i));
+        }
+        command = "reserve " + date + " " + BenchData.VACCINE;
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        return Scheduler.execute(patient, command);
+    }
+}
@@ -0,0 +1,62 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.util.Util;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Password hashing and the small helpers around it. None of these touch the database.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilBenchmark {
+
+    @Param({"Passw0rd!", "a-much-longer-Passw0rd-than-most-people-use!"})
+    public String password;
+
+    private byte[] salt;
+    private byte[] padded;
+
+    @Setup
+    public void setUp() {
+        salt = Util.generateSalt();
+        // a hash read back from a fixed width column, with trailing zero padding to strip
+        padded = Arrays.copyOf(Util.generateHash(password, salt), 32);
+    }
+
+    @Benchmark
+    public byte[] generateHash() {
+        return Util.generateHash(password, salt);
+    }
+
+    @Benchmark
+    public byte[] generateSaltAndHash() {
+        return Util.generateHash(password, Util.generateSalt());
+    }
+
+    @Benchmark
+    public byte[] trim() {
+        return Util.trim(padded);
+    }
+
+    @Benchmark
+    public boolean validPassword() {
+        return Util.validPassword(password);
+    }
+}
@@ -0,0 +1,53 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.model.Vaccine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dose updates through the Vaccine model, which go to the in-memory inventory and are written
+ * back by its flusher. The stock starts high enough that decrements never run out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VaccineBenchmark {
+
+    private Vaccine vaccine;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchData.create(1, 1, 0, 1_000_000_000);
+        vaccine = new Vaccine.VaccineGetter(BenchData.VACCINE).get();
+    }
+
+    @Benchmark
+    public void increaseAvailableDoses() throws Exception {
+        vaccine.increaseAvailableDoses(1);
+    }
+
+    @Benchmark
+    public void decreaseAvailableDoses() throws Exception {
+        vaccine.decreaseAvailableDoses(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void decreaseAvailableDosesContended() throws Exception {
+        vaccine.decreaseAvailableDoses(1);
+    }
+}
@@ -15,4 +15,25 @@ CREATE TABLE Vaccines (
     Name varchar(255),
     Doses int,
     PRIMARY KEY (Name)
-);
\ No newline at end of file
+);
+
+CREATE TABLE Patients (
+    Username varchar(255),
+    Salt BYTEA,
+    Hash BYTEA,
+    PRIMARY KEY (Username)
+);
+
+CREATE TABLE Appointments (
+    Appointment_id INT PRIMARY KEY,
+    Time date,
+    Caregiver_name VARCHAR(255) REFERENCES Caregivers(Username),
+    Patient_name VARCHAR(255) REFERENCES Patients(Username),
+    Vaccine VARCHAR(255) REFERENCES Vaccines(Name)
+);
+
+CREATE TABLE Sequences (
+    Name varchar(255),
+    Next_value bigint,
+    PRIMARY KEY (Name)
+);
@@ -0,0 +1,42 @@
+-- Schema as of the first migration. It is idempotent so that databases created from
+-- aurora-create.sql before migrations existed pass through it unchanged.
+
+CREATE TABLE IF NOT EXISTS Caregivers (
+    Username varchar(255),
+    Salt BYTEA,
+    Hash BYTEA,
+    PRIMARY KEY (Username)
+);
+
+CREATE TABLE IF NOT EXISTS Availabilities (
+    Time date,
+    Username varchar(255) REFERENCES Caregivers,
+    PRIMARY KEY (Time, Username)
+);
+
+CREATE TABLE IF NOT EXISTS Vaccines (
+    Name varchar(255),
+    Doses int,
+    PRIMARY KEY (Name)
+);
+
+CREATE TABLE IF NOT EXISTS Patients (
+    Username varchar(255),
+    Salt BYTEA,
+    Hash BYTEA,
+    PRIMARY KEY (Username)
+);
+
+CREATE TABLE IF NOT EXISTS Appointments (
+    Appointment_id INT PRIMARY KEY,
+    Time date,
+    Caregiver_name VARCHAR(255) REFERENCES Caregivers(Username),
+    Patient_name VARCHAR(255) REFERENCES Patients(Username),
+    Vaccine VARCHAR(255) REFERENCES Vaccines(Name)
+);
+
+CREATE TABLE IF NOT EXISTS Sequences (
+    Name varchar(255),
+    Next_value bigint,
+    PRIMARY KEY (Name)
+);
@@ -0,0 +1,11 @@
+-- show_appointments filters Appointments by Patient_name or Caregiver_name and pages by
+-- Appointment_id, and least_loaded assignment counts appointments per caregiver. The INCLUDE
+-- columns let those queries be answered by index-only scans.
+-- Availability by date needs no index of its own: the (Time, Username) primary key already
+-- covers lookups by Time.
+
+CREATE INDEX IF NOT EXISTS Appointments_by_patient
+    ON Appointments (Patient_name, Appointment_id) INCLUDE (Time, Vaccine, Caregiver_name);
+
+CREATE INDEX IF NOT EXISTS Appointments_by_caregiver
+    ON Appointments (Caregiver_name, Appointment_id) INCLUDE (Time, Vaccine, Patient_name);
@@ -0,0 +1,9 @@
+-- Appointments older than a cutoff are moved into one table per month, named
+-- Appointments_YYYY_MM. This lists the archive tables that exist so queries over history know
+-- which ones to read.
+
+CREATE TABLE IF NOT EXISTS Appointment_archives (
+    Month varchar(7),
+    Table_name varchar(255),
+    PRIMARY KEY (Month)
+);
@@ -30,3 +30,9 @@ CREATE TABLE Appointments (
     Patient_name VARCHAR(255) REFERENCES Patients(Username),
     Vaccine VARCHAR(255) REFERENCES Vaccines(Name)
 );
+
+CREATE TABLE Sequences (
+    Name varchar(255),
+    Next_value bigint,
+    PRIMARY KEY (Name)
+);
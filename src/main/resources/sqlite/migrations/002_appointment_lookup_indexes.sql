@@ -0,0 +1,11 @@
+-- show_appointments filters Appointments by Patient_name or Caregiver_name and pages by
+-- Appointment_id, and least_loaded assignment counts appointments per caregiver. These indexes
+-- hold every column those queries read, so none of them touches the table itself.
+-- Availability by date needs no index of its own: the (Time, Username) primary key already
+-- covers lookups by Time.
+
+CREATE INDEX IF NOT EXISTS Appointments_by_patient
+    ON Appointments (Patient_name, Appointment_id, Time, Vaccine, Caregiver_name);
+
+CREATE INDEX IF NOT EXISTS Appointments_by_caregiver
+    ON Appointments (Caregiver_name, Appointment_id, Time, Vaccine, Patient_name);
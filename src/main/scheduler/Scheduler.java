@@ -1,115 +1,284 @@
 package scheduler;
 
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameFilter;
+import scheduler.cache.VaccineInventory;
+import scheduler.command.Command;
+import scheduler.command.Command.Role;
+import scheduler.command.CommandRecorder;
+import scheduler.command.CommandRegistry;
 import scheduler.db.ConnectionManager;
+import scheduler.db.ConnectionPool;
+import scheduler.db.IdAllocator;
+import scheduler.db.MigrationRunner;
+import scheduler.db.PooledConnection;
+import scheduler.db.SqlStats;
+import scheduler.metrics.LatencyHistogram;
+import scheduler.metrics.Metrics;
 import scheduler.model.Caregiver;
 import scheduler.model.Patient;
 import scheduler.model.Vaccine;
+import scheduler.service.AppointmentArchive;
+import scheduler.service.CancelEngine;
+import scheduler.service.Cancellation;
+import scheduler.service.CaregiverAssignment;
+import scheduler.service.Reservation;
+import scheduler.service.ReserveEngine;
+import scheduler.service.UserImporter;
+import scheduler.service.Waitlist;
+import scheduler.session.Session;
+import scheduler.session.SessionStore;
+import scheduler.util.Config;
 import scheduler.util.Util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.sql.Connection;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Date;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 
 import java.util.*;
 
 public class Scheduler {
 
-    // objects to keep track of the currently logged-in user
-    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
-    //       since only one user can be logged-in at a time
-    private static Caregiver currentCaregiver = null;
-    private static Patient currentPatient = null;
+    private static final IdAllocator appointmentIds = new IdAllocator("Appointments",
+            "SELECT MAX(Appointment_id) FROM Appointments", Config.getInt("AppointmentIdBlockSize", 50));
+    private static final AvailabilityIndex availabilityIndex = AvailabilityIndex.getInstance();
+    private static final VaccineInventory vaccineInventory = VaccineInventory.getInstance();
+    private static final CaregiverAssignment assignment =
+            CaregiverAssignment.forName(Config.get("AssignmentStrategy", "least_loaded"));
+    private static final ReserveEngine reserveEngine =
+            new ReserveEngine(appointmentIds, availabilityIndex, vaccineInventory, assignment);
+    private static final CancelEngine cancelEngine = new CancelEngine(availabilityIndex, vaccineInventory, assignment);
+    private static final Waitlist waitlist = new Waitlist(reserveEngine);
+    private static final AppointmentArchive archive = new AppointmentArchive(appointmentIds);
+
+    // open bounds and page size for show_appointments
+    private static final Date FIRST_DATE = Date.valueOf("0001-01-01");
+    private static final Date LAST_DATE = Date.valueOf("9999-12-31");
+    private static final int APPOINTMENT_PAGE_SIZE = Config.getInt("AppointmentPageSize", 100);
+    private static final int FETCH_SIZE = Config.getInt("FetchSize", 500);
+    // how many of the most expensive statements stats lists
+    private static final int STATS_TOP_STATEMENTS = Config.getInt("StatsTopStatements", 10);
+    // longest date range one search_caregiver_schedule may cover
+    private static final int MAX_SEARCH_DAYS = Config.getInt("MaxSearchDays", 366);
+    // longest date range one upload_availability may cover
+    private static final int MAX_UPLOAD_DAYS = Config.getInt("MaxUploadDays", 366);
+
+    // every verb of the protocol with who may run it and how many arguments it takes
+    private static final CommandRegistry commands = new CommandRegistry()
+            .register(new Command.CommandBuilder("create_patient", Scheduler::createPatient)
+                    .usage("<username> <password>").args(2, "Create patient failed").build())
+            .register(new Command.CommandBuilder("create_caregiver", Scheduler::createCaregiver)
+                    .usage("<username> <password>").args(2, "Failed to create user.").build())
+            .register(new Command.CommandBuilder("login_patient", Scheduler::loginPatient)
+                    .usage("<username> <password>").args(2, "Login patient failed")
+                    .role(Role.LOGGED_OUT, null, "User already logged in, try again").build())
+            .register(new Command.CommandBuilder("login_caregiver", Scheduler::loginCaregiver)
+                    .usage("<username> <password>").args(2, "Login failed.")
+                    .role(Role.LOGGED_OUT, null, "User already logged in.").build())
+            .register(new Command.CommandBuilder("resume", Scheduler::resume)
+                    .usage("<token>").args(1, "Please try again!")
+                    .role(Role.LOGGED_OUT, null, "User already logged in.").build())
+            .register(new Command.CommandBuilder("search_caregiver_schedule", Scheduler::searchCaregiverSchedule)
+                    .usage("<date> [to_date]").args(1, 2, "Search caregiver failed")
+                    .role(Role.LOGGED_IN, "Need to login first", null).build())
+            .register(new Command.CommandBuilder("reserve", Scheduler::reserve)
+                    .usage("<date> <vaccine>").args(2, "Please try again")
+                    .role(Role.PATIENT, "Need to login first", "Please login as patient").build())
+            .register(new Command.CommandBuilder("leave_waitlist", Scheduler::leaveWaitlist)
+                    .usage("[date vaccine]").args(0, 2, "Please try again!")
+                    .role(Role.PATIENT, "Need to login first", "Please login as patient").build())
+            .register(new Command.CommandBuilder("upload_availability", Scheduler::uploadAvailability)
+                    .usage("<date> [to_date] [weekdays]").args(1, 3, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("import_users", Scheduler::importUsers)
+                    .usage("<csv file>").args(1, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("cancel", Scheduler::cancel)
+                    .usage("<appointment_id>").args(1, "Please try again!")
+                    .role(Role.LOGGED_IN, "Please login first", null).build())
+            .register(new Command.CommandBuilder("cancel_all", Scheduler::cancelAll)
+                    .usage("<caregiver> <date>").args(2, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("add_doses", Scheduler::addDoses)
+                    .usage("<vaccine> <number>").args(2, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("show_appointments", Scheduler::showAppointments)
+                    .usage("[from] [to] [limit] [after_id]").args(0, 4, "Please try again!")
+                    .role(Role.LOGGED_IN, "Please login first", null).build())
+            .register(new Command.CommandBuilder("archive_appointments", Scheduler::archiveAppointments)
+                    .usage("<cutoff_date>").args(1, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("stats", Scheduler::stats)
+                    .usage("[reset]").args(0, 1, "Please try again!")
+                    .role(Role.CAREGIVER, "Please login as a caregiver first!", "Please login as a caregiver first!")
+                    .build())
+            .register(new Command.CommandBuilder("logout", Scheduler::logout)
+                    .args(0, "Please try again")
+                    .role(Role.LOGGED_IN, "Please login first", null).build())
+            .register(new Command.CommandBuilder("quit", Scheduler::quit)
+                    .endsSession().build());
+
+    // null unless RecordFile is set
+    private static final CommandRecorder recorder = CommandRecorder.fromConfig();
 
     public static void main(String[] args) {
-        // printing greetings text
-        System.out.println();
-        System.out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
-        System.out.println("*** Please enter one of the following commands ***");
-        System.out.println("> create_patient <username> <password>");  //TODO: implement create_patient (Part 1)
-        System.out.println("> create_caregiver <username> <password>");
-        System.out.println("> login_patient <username> <password>");  // TODO: implement login_patient (Part 1)
-        System.out.println("> login_caregiver <username> <password>");
-        System.out.println("> search_caregiver_schedule <date>");  // TODO: implement search_caregiver_schedule (Part 2)
-        System.out.println("> reserve <date> <vaccine>");  // TODO: implement reserve (Part 2)
-        System.out.println("> upload_availability <date>");
-        System.out.println("> cancel <appointment_id>");  // TODO: implement cancel (extra credit)
-        System.out.println("> add_doses <vaccine> <number>");
-        System.out.println("> show_appointments");  // TODO: implement show_appointments (Part 2)
-        System.out.println("> logout");  // TODO: implement logout (Part 2)
-        System.out.println("> quit");
-        System.out.println();
+        if (Boolean.parseBoolean(Config.get("MigrateOnStartup", "true"))) {
+            migrate();
+        }
+        // load caregiver availability, vaccine stock, the username filters and caregiver load up front
+        // so the first command does not pay for it
+        warmUp();
+
+        if (args.length > 0 && args[0].equals("server")) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : Config.getInt("ServerPort", 4242);
+            try {
+                new SchedulerServer(port).serve();
+            } catch (IOException e) {
+                System.out.println("Could not start the server on port " + port);
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        if (args.length > 0 && args[0].equals("batch")) {
+            if (args.length != 2) {
+                System.out.println("Usage: Scheduler batch <script>");
+                return;
+            }
+            runBatch(Paths.get(args[1]));
+            return;
+        }
 
         // read input from user
+        Session session = new Session(new PrintWriter(new OutputStreamWriter(System.out), true));
         BufferedReader r = new BufferedReader(new InputStreamReader(System.in));
+        printGreeting(session);
+        run(session, r);
+    }
+
+    private static void migrate() {
+        try {
+            int applied = new MigrationRunner().migrate();
+            if (applied > 0) {
+                System.out.println("Applied " + applied + " schema migrations");
+            }
+        } catch (IOException | SQLException e) {
+            System.out.println("Error occurred when migrating the database schema");
+            e.printStackTrace();
+        }
+    }
+
+    public static void warmUp() {
+        try {
+            availabilityIndex.load();
+            vaccineInventory.load();
+            UsernameFilter.patients().load();
+            UsernameFilter.caregivers().load();
+            try (PooledConnection lease = ConnectionManager.lease()) {
+                assignment.load(lease);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error occurred when loading caregiver availability, vaccines, usernames and "
+                    + "caregiver load");
+            e.printStackTrace();
+        }
+    }
+
+    // runs the command loop for one client until it quits or its input ends
+    static void run(Session session, BufferedReader r) {
         while (true) {
-            System.out.print("> ");
-            String response = "";
+            session.prompt();
+            String response;
             try {
                 response = r.readLine();
             } catch (IOException e) {
-                System.out.println("Please try again!");
-            }
-            // split the user input by spaces
-            String[] tokens = response.split(" ");
-            // check if input exists
-            if (tokens.length == 0) {
-                System.out.println("Please try again!");
-                continue;
+                return;
             }
-            // determine which operation to perform
-            String operation = tokens[0];
-            if (operation.equals("create_patient")) {
-                createPatient(tokens);
-            } else if (operation.equals("create_caregiver")) {
-                createCaregiver(tokens);
-            } else if (operation.equals("login_patient")) {
-                loginPatient(tokens);
-            } else if (operation.equals("login_caregiver")) {
-                loginCaregiver(tokens);
-            } else if (operation.equals("search_caregiver_schedule")) {
-                searchCaregiverSchedule(tokens);
-            } else if (operation.equals("reserve")) {
-                reserve(tokens);
-            } else if (operation.equals("upload_availability")) {
-                uploadAvailability(tokens);
-            } else if (operation.equals("cancel")) {
-                cancel(tokens);
-            } else if (operation.equals("add_doses")) {
-                addDoses(tokens);
-            } else if (operation.equals("show_appointments")) {
-                showAppointments(tokens);
-            } else if (operation.equals("logout")) {
-                logout(tokens);
-            } else if (operation.equals("quit")) {
-                System.out.println("Bye!");
+            // end of input counts as quit
+            if (response == null || !execute(session, response)) {
+                session.getOut().flush();
                 return;
-            } else {
-                System.out.println("Invalid operation name!");
             }
         }
     }
 
-    private static void createPatient(String[] tokens) {
-        // TODO: Part 1
-        if (tokens.length != 3) {
-            System.out.println("Create patient failed");
-            return;
+    // runs one command line for the session, returns false once the session should end
+    public static boolean execute(Session session, String line) {
+        if (recorder != null) {
+            recorder.record(session, line);
+        }
+        return commands.dispatch(session, line);
+    }
+
+    // runs a script of commands without prompts, writing output through one large buffer
+    // instead of flushing after every line
+    private static void runBatch(Path script) {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16), false);
+        Session session = new Session(out, false);
+        try (BufferedReader r = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            run(session, r);
+        } catch (IOException e) {
+            out.println("Could not read " + script);
+        }
+        flushInventory(session);
+        out.flush();
+    }
+
+    static void printGreeting(Session session) {
+        // printing greetings text
+        session.println();
+        session.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+        session.println("*** Please enter one of the following commands ***");
+        for (Command command : commands.getCommands()) {
+            session.println("> " + command.getUsage());
         }
+        session.println();
+    }
+
+    private static void quit(Session session, String[] tokens) {
+        flushInventory(session);
+        session.println("Bye!");
+    }
+
+    private static void flushInventory(Session session) {
+        try {
+            vaccineInventory.flush();
+        } catch (SQLException e) {
+            session.fail("Error occurred when saving vaccine doses");
+            e.printStackTrace();
+        }
+    }
+
+    private static void createPatient(Session session, String[] tokens) {
         String username = tokens[1];
         String password = tokens[2];
 
-        if (usernameExistsPatient(username)) {
-            System.out.println("Username taken, try again");
+        if (usernameExistsPatient(session, username)) {
+            session.fail("Username taken, try again");
             return;
         }
 
-        if (!validPassword(password)) {
-            System.out.println("Create patient failed, please use a strong password (8+ char, at least one upper and one lower, at least one letter and one number, and at least one special character, from \"!\", \"@\", \"#\", \"?\")");
+        if (!Util.validPassword(password)) {
+            session.fail("Create patient failed, please use a strong password (8+ char, at least one upper and one lower, at least one letter and one number, and at least one special character, from \"!\", \"@\", \"#\", \"?\")");
             return;
         }
 
@@ -120,25 +289,34 @@ public class Scheduler {
             Patient patient = new Patient.PatientBuilder(username, salt, hash).build();
             // save to patient information to our database
             patient.saveToDB();
-            System.out.println("Created user " + username);
+            session.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Create patient failed");
+            session.fail("Create patient failed");
         }
     }
 
-    private static boolean usernameExistsPatient(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+    private static boolean usernameExistsPatient(Session session, String username) {
+        // most signups use a new name, and the filter can rule those out without a query
+        try {
+            if (!UsernameFilter.patients().mightContain(username)) {
+                return false;
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
 
-        String selectUsername = "SELECT * FROM Patients WHERE Username = ?";
+        ConnectionManager cm = new ConnectionManager();
+        String selectUsername = "SELECT 1 FROM Patients WHERE Username = ?";
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
+            cm.createConnection();
+            PreparedStatement statement = cm.prepareStatement(selectUsername);
             statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
+                return resultSet.isBeforeFirst();
+            }
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
+            session.fail("Error occurred when checking username");
             e.printStackTrace();
         } finally {
             cm.closeConnection();
@@ -146,23 +324,18 @@ public class Scheduler {
         return true;
     }
 
-    private static void createCaregiver(String[] tokens) {
+    private static void createCaregiver(Session session, String[] tokens) {
         // create_caregiver <username> <password>
-        // check 1: the length for tokens need to be exactly 3 to include all information (with the operation name)
-        if (tokens.length != 3) {
-            System.out.println("Failed to create user.");
-            return;
-        }
         String username = tokens[1];
         String password = tokens[2];
-        // check 2: check if the username has been taken already
-        if (usernameExistsCaregiver(username)) {
-            System.out.println("Username taken, try again!");
+        // check if the username has been taken already
+        if (usernameExistsCaregiver(session, username)) {
+            session.fail("Username taken, try again!");
             return;
         }
 
-        if (!validPassword(password)) {
-            System.out.println("Create caregiver failed, please use a strong password (8+ char, at least one upper and one lower, at least one letter and one number, and at least one special character, from \"!\", \"@\", \"#\", \"?\")");
+        if (!Util.validPassword(password)) {
+            session.fail("Create caregiver failed, please use a strong password (8+ char, at least one upper and one lower, at least one letter and one number, and at least one special character, from \"!\", \"@\", \"#\", \"?\")");
             return;
         }
 
@@ -173,63 +346,35 @@ public class Scheduler {
             Caregiver caregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
             // save to caregiver information to our database
             caregiver.saveToDB();
-            System.out.println("Created user " + username);
+            session.println("Created user " + username);
         } catch (SQLException e) {
-            System.out.println("Failed to create user.");
+            session.fail("Failed to create user.");
             e.printStackTrace();
         }
     }
 
-    // edge cases: if password.length < 8 || (hasLowercase && hasUppercase) || (hasLetter && hasNumber) || (does not contain a special character)
-    private static boolean validPassword(String password) {
-        boolean hasLower = false;
-        boolean hasUpper = false;
-        boolean hasDigit = false;
-        boolean hasLetter = false;
-        boolean hasSpecial = false;
-
-        if (password.length() < 8) {
-            return false;
-        }
-
-        List<Character> special = new ArrayList<>();
-        special.add('!');
-        special.add('@');
-        special.add('#');
-        special.add('?');
-
-        for (char c : password.toCharArray()) {
-            if (special.contains(c)) {
-                hasSpecial = true;
-            }
-            if (Character.isLowerCase(c)) {
-                hasLower = true;
-            }
-            if (Character.isUpperCase(c)) {
-                hasUpper = true;
-            }
-            if (Character.isDigit(c)) {
-                hasDigit = true;
-            }
-            if (Character.isLetter(c)) {
-                hasLetter = true;
+    private static boolean usernameExistsCaregiver(Session session, String username) {
+        // most signups use a new name, and the filter can rule those out without a query
+        try {
+            if (!UsernameFilter.caregivers().mightContain(username)) {
+                return false;
             }
+        } catch (SQLException e) {
+            e.printStackTrace();
         }
-        return (hasLower && hasUpper && hasDigit && hasLetter && hasSpecial);
-    }
-    private static boolean usernameExistsCaregiver(String username) {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
 
-        String selectUsername = "SELECT * FROM Caregivers WHERE Username = ?";
+        ConnectionManager cm = new ConnectionManager();
+        String selectUsername = "SELECT 1 FROM Caregivers WHERE Username = ?";
         try {
-            PreparedStatement statement = con.prepareStatement(selectUsername);
+            cm.createConnection();
+            PreparedStatement statement = cm.prepareStatement(selectUsername);
             statement.setString(1, username);
-            ResultSet resultSet = statement.executeQuery();
-            // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
-            return resultSet.isBeforeFirst();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // returns false if the cursor is not before the first record or if there are no rows in the ResultSet.
+                return resultSet.isBeforeFirst();
+            }
         } catch (SQLException e) {
-            System.out.println("Error occurred when checking username");
+            session.fail("Error occurred when checking username");
             e.printStackTrace();
         } finally {
             cm.closeConnection();
@@ -237,17 +382,7 @@ public class Scheduler {
         return true;
     }
 
-    private static void loginPatient(String[] tokens) {
-        // TODO: Part 1
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in, try again");
-            return;
-        }
-
-        if (tokens.length != 3) {
-            System.out.println("Login patient failed");
-            return;
-        }
+    private static void loginPatient(Session session, String[] tokens) {
         String username = tokens[1];
         String password = tokens[2];
 
@@ -255,29 +390,20 @@ public class Scheduler {
         try {
             patient = new Patient.PatientGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login patient failed");
+            session.fail("Login patient failed");
         }
         // check if the login was successful
         if (patient == null) {
-            System.out.println("Login patient failed");
+            session.fail("Login patient failed");
         } else {
-            System.out.println("Logged in as " + username);
-            currentPatient = patient;
+            session.println("Logged in as " + username);
+            session.login(patient, SessionStore.getInstance().open(patient));
+            session.println("Session token: " + session.getToken());
         }
     }
 
-    private static void loginCaregiver(String[] tokens) {
+    private static void loginCaregiver(Session session, String[] tokens) {
         // login_caregiver <username> <password>
-        // check 1: if someone's already logged-in, they need to log out first
-        if (currentCaregiver != null || currentPatient != null) {
-            System.out.println("User already logged in.");
-            return;
-        }
-        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
-        if (tokens.length != 3) {
-            System.out.println("Login failed.");
-            return;
-        }
         String username = tokens[1];
         String password = tokens[2];
 
@@ -285,305 +411,566 @@ public class Scheduler {
         try {
             caregiver = new Caregiver.CaregiverGetter(username, password).get();
         } catch (SQLException e) {
-            System.out.println("Login failed.");
+            session.fail("Login failed.");
             e.printStackTrace();
         }
         // check if the login was successful
         if (caregiver == null) {
-            System.out.println("Login failed.");
+            session.fail("Login failed.");
         } else {
-            System.out.println("Logged in as: " + username);
-            currentCaregiver = caregiver;
+            session.println("Logged in as: " + username);
+            session.login(caregiver, SessionStore.getInstance().open(caregiver));
+            session.println("Session token: " + session.getToken());
         }
     }
 
-    private static void searchCaregiverSchedule(String[] tokens) {
-        // TODO: Part 2
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Need to login first");
+    // resume <token>
+    // picks up a login from the session store without touching the database or hashing
+    private static void resume(Session session, String[] tokens) {
+        SessionStore.Login login = SessionStore.getInstance().resume(tokens[1]);
+        if (login == null) {
+            session.fail("Session expired, please login again");
             return;
         }
-        if (tokens.length != 2) {
-            System.out.println("Search caregiver failed");
-            return;
+        if (login.getPatient() != null) {
+            session.login(login.getPatient(), tokens[1]);
+        } else {
+            session.login(login.getCaregiver(), tokens[1]);
         }
+        session.println("Logged in as " + session.getUsername());
+    }
 
+    private static void searchCaregiverSchedule(Session session, String[] tokens) {
+        if (tokens.length == 3) {
+            searchCaregiverScheduleRange(session, tokens);
+            return;
+        }
         String date = tokens[1];
         try {
             Date d = Date.valueOf(date);
 
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-            String getCaregivers = "SELECT Username FROM Availabilities WHERE Time = ? ORDER BY Username";
-            String getVaccines = "SELECT Name, Doses FROM Vaccines WHERE Doses > 0 ORDER BY Name";
             try {
                 // Get available caregivers
-                PreparedStatement caregiverStatement = con.prepareStatement(getCaregivers);
-                caregiverStatement.setDate(1, d);
-                ResultSet caregiverResult = caregiverStatement.executeQuery();
-
-                System.out.println("Available caregivers:");
+                session.println("Available caregivers:");
                 boolean hasCaregivers = false;
-                while (caregiverResult.next()) {
-                    System.out.println(caregiverResult.getString("Username"));
+                for (String username : availabilityIndex.caregivers(d)) {
+                    session.println(username);
                     hasCaregivers = true;
                 }
                 if (!hasCaregivers) {
-                    System.out.println("No caregivers available on this date.");
+                    session.println("No caregivers available on this date.");
                 }
 
                 // Get available vaccines
-                PreparedStatement vaccineStatement = con.prepareStatement(getVaccines);
-                ResultSet vaccineResult = vaccineStatement.executeQuery();
-
-                System.out.println("Available vaccines:");
-                boolean hasVaccines = false;
-                while (vaccineResult.next()) {
-                    System.out.println(vaccineResult.getString("Name") + " " + vaccineResult.getInt("Doses"));
-                    hasVaccines = true;
+                session.println("Available vaccines:");
+                Map<String, Integer> vaccines = vaccineInventory.available();
+                for (Map.Entry<String, Integer> vaccine : vaccines.entrySet()) {
+                    session.println(vaccine.getKey() + " " + vaccine.getValue());
                 }
-                if (!hasVaccines) {
-                    System.out.println("No vaccines available.");
+                if (vaccines.isEmpty()) {
+                    session.println("No vaccines available.");
                 }
             } catch (SQLException e) {
-                System.out.println("Error occurred when searching caregiver schedule");
+                session.fail("Error occurred when searching caregiver schedule");
                 e.printStackTrace();
-            } finally {
-                cm.closeConnection();
             }
         } catch (IllegalArgumentException e) {
-            System.out.println("Enter a valid date");
+            session.fail("Enter a valid date");
         }
     }
 
-    private static void reserve(String[] tokens) {
-        // TODO: Part 2
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Need to login first");
+    // search_caregiver_schedule <from> <to>
+    // one pass over the index's dates in the range, printing one line per day that has free
+    // caregivers and the vaccine stock once at the end
+    private static void searchCaregiverScheduleRange(Session session, String[] tokens) {
+        Date from;
+        Date to;
+        try {
+            from = Date.valueOf(tokens[1]);
+            to = Date.valueOf(tokens[2]);
+        } catch (IllegalArgumentException e) {
+            session.fail("Enter a valid date");
             return;
         }
-        if (currentCaregiver != null) {
-            System.out.println("Please login as patient");
+        long days = ChronoUnit.DAYS.between(from.toLocalDate(), to.toLocalDate()) + 1;
+        if (days < 1 || days > MAX_SEARCH_DAYS) {
+            session.fail("Enter a date range of 1 to " + MAX_SEARCH_DAYS + " days");
             return;
         }
-        if (tokens.length != 3) {
-            System.out.println("Please try again");
-            return;
+
+        PrintWriter out = session.getOut();
+        try {
+            out.println("Available caregivers:");
+            boolean hasCaregivers = false;
+            for (Map.Entry<LocalDate, NavigableSet<String>> day : availabilityIndex.caregivers(from, to).entrySet()) {
+                if (day.getValue().isEmpty()) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder().append(day.getKey()).append(':');
+                for (String username : day.getValue()) {
+                    line.append(' ').append(username);
+                }
+                out.write(line.toString());
+                out.write(System.lineSeparator());
+                hasCaregivers = true;
+            }
+            if (!hasCaregivers) {
+                out.println("No caregivers available in this date range.");
+            }
+
+            out.println("Available vaccines:");
+            Map<String, Integer> vaccines = vaccineInventory.available();
+            for (Map.Entry<String, Integer> vaccine : vaccines.entrySet()) {
+                out.println(vaccine.getKey() + " " + vaccine.getValue());
+            }
+            if (vaccines.isEmpty()) {
+                out.println("No vaccines available.");
+            }
+        } catch (SQLException e) {
+            session.fail("Error occurred when searching caregiver schedule");
+            e.printStackTrace();
+        } finally {
+            out.flush();
         }
+    }
 
+    private static void reserve(Session session, String[] tokens) {
         String date = tokens[1];
         String vaccineName = tokens[2];
 
+        Date d;
         try {
-            Date d = Date.valueOf(date);
+            d = Date.valueOf(date);
+        } catch (IllegalArgumentException e) {
+            session.fail("Please enter a valid date!");
+            return;
+        }
 
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
+        try {
+            Reservation reservation = reserveEngine.reserve(session.getPatient().getUsername(), d, vaccineName);
+            if (reservation.getStatus() == Reservation.Status.NO_DOSES) {
+                session.fail("Not enough available doses!");
+                joinWaitlist(session, d, vaccineName);
+            } else if (reservation.getStatus() == Reservation.Status.NO_CAREGIVER) {
+                session.fail("No Caregiver is available!");
+                joinWaitlist(session, d, vaccineName);
+            } else {
+                // booked by hand, so the matcher must not book this vaccine again on any date
+                waitlist.leaveVaccine(session.getUsername(), vaccineName);
+                session.println("Appointment ID: " + reservation.getAppointmentId()
+                        + ", Caregiver username: " + reservation.getCaregiverName());
+            }
+        } catch (SQLException e) {
+            session.fail("Please try again!");
+            e.printStackTrace();
+        }
+    }
 
-            // Check if vaccine exists and has doses
-            String checkVaccine = "SELECT Doses FROM Vaccines WHERE Name = ?";
-            PreparedStatement vaccineStatement = con.prepareStatement(checkVaccine);
-            vaccineStatement.setString(1, vaccineName);
-            ResultSet vaccineResult = vaccineStatement.executeQuery();
+    // the booking is made when supply arrives; the patient sees it in show_appointments. Dates
+    // that have passed and vaccines nobody stocks can never be supplied, so they are not queued,
+    // and neither is a patient who already has an upcoming appointment for the vaccine
+    private static void joinWaitlist(Session session, Date d, String vaccineName) throws SQLException {
+        if (d.toLocalDate().isBefore(LocalDate.now()) || vaccineInventory.getDoses(vaccineName) == null) {
+            return;
+        }
+        if (waitlist.holdsAppointment(session.getUsername(), vaccineName)) {
+            session.println("You already have an upcoming " + vaccineName + " appointment, not added to the waitlist");
+            return;
+        }
+        int position = waitlist.join(session.getUsername(), d, vaccineName);
+        if (position == 0) {
+            session.println("The waitlist for " + d + " is full, please try another date");
+        } else {
+            session.println("Added to the waitlist for " + d + " at position " + position
+                    + ", check show_appointments for your booking");
+        }
+    }
 
-            if (!vaccineResult.next() || vaccineResult.getInt("Doses") <= 0) {
-                System.out.println("Not enough available doses!");
-                cm.closeConnection();
-                return;
-            }
+    // leave_waitlist [date] [vaccine]
+    // leaves every waitlist, or just the one for a date and vaccine
+    private static void leaveWaitlist(Session session, String[] tokens) {
+        String username = session.getUsername();
+        if (tokens.length == 1) {
+            session.println("Left " + waitlist.leaveAll(username) + " waitlists");
+            return;
+        }
+        if (tokens.length != 3) {
+            session.fail("Please try again!");
+            return;
+        }
+        Date d;
+        try {
+            d = Date.valueOf(tokens[1]);
+        } catch (IllegalArgumentException e) {
+            session.fail("Please enter a valid date!");
+            return;
+        }
+        if (waitlist.leave(username, d, tokens[2])) {
+            session.println("Left the waitlist for " + d + " " + tokens[2]);
+        } else {
+            session.fail("Not on the waitlist for " + d + " " + tokens[2]);
+        }
+    }
 
-            // Find available caregiver
-            String findCaregiver = "SELECT Username FROM Availabilities WHERE Time = ? ORDER BY Username LIMIT 1";
-            PreparedStatement caregiverStatement = con.prepareStatement(findCaregiver);
-            caregiverStatement.setDate(1, d);
-            ResultSet caregiverResult = caregiverStatement.executeQuery();
+    private static void uploadAvailability(Session session, String[] tokens) {
+        if (tokens.length > 2) {
+            uploadAvailabilityRange(session, tokens);
+            return;
+        }
+        // upload_availability <date>
+        String date = tokens[1];
+        try {
+            Date d = Date.valueOf(date);
+            session.getCaregiver().uploadAvailability(d);
+            session.println("Availability uploaded!");
+            waitlist.availabilityAdded(d);
+        } catch (IllegalArgumentException e) {
+            session.fail("Please enter a valid date!");
+        } catch (SQLException e) {
+            session.fail("Error occurred when uploading availability");
+            e.printStackTrace();
+        }
+    }
 
-            if (!caregiverResult.next()) {
-                System.out.println("No Caregiver is available!");
-                cm.closeConnection();
+    // upload_availability <from> <to> [weekdays]
+    // weekdays is a comma separated list such as mon,wed,fri; every day of the week by default
+    private static void uploadAvailabilityRange(Session session, String[] tokens) {
+        Date from;
+        Date to;
+        try {
+            from = Date.valueOf(tokens[1]);
+            to = Date.valueOf(tokens[2]);
+        } catch (IllegalArgumentException e) {
+            session.fail("Please enter a valid date!");
+            return;
+        }
+        long days = ChronoUnit.DAYS.between(from.toLocalDate(), to.toLocalDate()) + 1;
+        if (days < 1 || days > MAX_UPLOAD_DAYS) {
+            session.fail("Please enter a date range of 1 to " + MAX_UPLOAD_DAYS + " days!");
+            return;
+        }
+        Set<DayOfWeek> weekdays = EnumSet.allOf(DayOfWeek.class);
+        if (tokens.length > 3) {
+            weekdays = parseWeekdays(tokens[3]);
+            if (weekdays == null) {
+                session.fail("Please enter weekdays like mon,wed,fri!");
                 return;
             }
+        }
 
-            String caregiverName = caregiverResult.getString("Username");
-
-            // Generate appointment ID
-            String getMaxId = "SELECT MAX(Appointment_id) as maxId FROM Appointments";
-            PreparedStatement maxIdStatement = con.prepareStatement(getMaxId);
-            ResultSet maxIdResult = maxIdStatement.executeQuery();
-            int appointmentId = 1;
-            if (maxIdResult.next() && maxIdResult.getInt("maxId") > 0) {
-                appointmentId = maxIdResult.getInt("maxId") + 1;
+        try {
+            int added = session.getCaregiver().uploadAvailability(from, to, weekdays);
+            session.println("Availability uploaded for " + added + " dates!");
+            if (added > 0) {
+                waitlist.availabilityAdded(from, to);
             }
+        } catch (SQLException e) {
+            session.fail("Error occurred when uploading availability");
+            e.printStackTrace();
+        }
+    }
 
-            // Create appointment
-            String createAppointment = "INSERT INTO Appointments VALUES (?, ?, ?, ?, ?)";
-            PreparedStatement appointmentStatement = con.prepareStatement(createAppointment);
-            appointmentStatement.setInt(1, appointmentId);
-            appointmentStatement.setDate(2, d);
-            appointmentStatement.setString(3, caregiverName);
-            appointmentStatement.setString(4, currentPatient.getUsername());
-            appointmentStatement.setString(5, vaccineName);
-            appointmentStatement.executeUpdate();
-
-            // Remove caregiver availability
-            String removeAvailability = "DELETE FROM Availabilities WHERE Time = ? AND Username = ?";
-            PreparedStatement removeStatement = con.prepareStatement(removeAvailability);
-            removeStatement.setDate(1, d);
-            removeStatement.setString(2, caregiverName);
-            removeStatement.executeUpdate();
-
-            // Decrease vaccine doses
-            Vaccine vaccine = new Vaccine.VaccineGetter(vaccineName).get();
-            vaccine.decreaseAvailableDoses(1);
-
-            System.out.println("Appointment ID: " + appointmentId + ", Caregiver username: " + caregiverName);
-            cm.closeConnection();
+    // null unless every item is the first three letters of a day's name
+    private static Set<DayOfWeek> parseWeekdays(String list) {
+        Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+        for (String item : list.split(",")) {
+            DayOfWeek match = null;
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().substring(0, 3).equalsIgnoreCase(item.trim())) {
+                    match = day;
+                }
+            }
+            if (match == null) {
+                return null;
+            }
+            weekdays.add(match);
+        }
+        return weekdays;
+    }
 
-        } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+    private static void importUsers(Session session, String[] tokens) {
+        // import_users <csv file>, each line is role,username,password
+        try {
+            UserImporter.Result result = new UserImporter().importFile(Paths.get(tokens[1]));
+            for (String failure : result.getFailures()) {
+                session.println("Skipped " + failure);
+            }
+            session.println("Imported " + result.getImported().size() + " users, skipped "
+                    + result.getFailures().size());
+        } catch (IOException e) {
+            session.fail("Could not read " + tokens[1]);
         } catch (SQLException e) {
-            System.out.println("Please try again!");
+            session.fail("Error occurred when importing users");
             e.printStackTrace();
         }
     }
 
-    private static void uploadAvailability(String[] tokens) {
-        // upload_availability <date>
-        // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+    // cancel <appointment_id>
+    // patients can cancel their own appointments and caregivers the ones they were booked for
+    private static void cancel(Session session, String[] tokens) {
+        int appointmentId;
+        try {
+            appointmentId = Integer.parseInt(tokens[1]);
+        } catch (NumberFormatException e) {
+            session.fail("Please try again!");
             return;
         }
-        // check 2: the length for tokens need to be exactly 2 to include all information (with the operation name)
-        if (tokens.length != 2) {
-            System.out.println("Please try again!");
-            return;
+        try {
+            Cancellation cancellation = session.getPatient() != null
+                    ? cancelEngine.cancelForPatient(appointmentId, session.getUsername())
+                    : cancelEngine.cancelForCaregiver(appointmentId, session.getUsername());
+            if (cancellation == null) {
+                session.fail("No appointment with ID " + appointmentId + " found!");
+                return;
+            }
+            session.println("Appointment ID: " + appointmentId + " cancelled");
+            cancelled(cancellation);
+        } catch (SQLException e) {
+            session.fail("Error occurred when cancelling appointment");
+            e.printStackTrace();
         }
-        String date = tokens[1];
+    }
+
+    // cancel_all <caregiver> <date>
+    // cancels everything a caregiver has on a date and lists the patients affected
+    private static void cancelAll(Session session, String[] tokens) {
+        Date d;
         try {
-            Date d = Date.valueOf(date);
-            currentCaregiver.uploadAvailability(d);
-            System.out.println("Availability uploaded!");
+            d = Date.valueOf(tokens[2]);
         } catch (IllegalArgumentException e) {
-            System.out.println("Please enter a valid date!");
+            session.fail("Please enter a valid date!");
+            return;
+        }
+        try {
+            List<Cancellation> cancelled = cancelEngine.cancelAll(tokens[1], d);
+            for (Cancellation cancellation : cancelled) {
+                session.println("Appointment ID: " + cancellation.getAppointmentId() + " cancelled, patient: "
+                        + cancellation.getPatientName());
+                cancelled(cancellation);
+            }
+            session.println("Cancelled " + cancelled.size() + " appointments");
         } catch (SQLException e) {
-            System.out.println("Error occurred when uploading availability");
+            session.fail("Error occurred when cancelling appointments");
             e.printStackTrace();
         }
     }
 
-    private static void cancel(String[] tokens) {
-        // TODO: Extra credit
+    // a cancelled appointment hands its slot and dose to whoever is waiting for them
+    private static void cancelled(Cancellation cancellation) {
+        if (cancellation.isSlotRestored()) {
+            waitlist.availabilityAdded(cancellation.getDate());
+        }
+        waitlist.dosesAdded(cancellation.getVaccineName());
     }
 
-    private static void addDoses(String[] tokens) {
+    private static void addDoses(Session session, String[] tokens) {
         // add_doses <vaccine> <number>
-        // check 1: check if the current logged-in user is a caregiver
-        if (currentCaregiver == null) {
-            System.out.println("Please login as a caregiver first!");
+        String vaccineName = tokens[1];
+        int doses;
+        try {
+            doses = Integer.parseInt(tokens[2]);
+        } catch (NumberFormatException e) {
+            session.fail("Please try again!");
             return;
         }
-        // check 2: the length for tokens need to be exactly 3 to include all information (with the operation name)
-        if (tokens.length != 3) {
-            System.out.println("Please try again!");
+        if (doses <= 0) {
+            session.fail("Please enter a positive number of doses!");
             return;
         }
-        String vaccineName = tokens[1];
-        int doses = Integer.parseInt(tokens[2]);
-        Vaccine vaccine = null;
         try {
-            vaccine = new Vaccine.VaccineGetter(vaccineName).get();
-        } catch (SQLException e) {
-            System.out.println("Error occurred when adding doses");
-            e.printStackTrace();
-        }
-        // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
-        //          table
-        if (vaccine == null) {
-            try {
+            Vaccine vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+            // check 3: if getter returns null, it means that we need to create the vaccine and insert it into the
+            //          Vaccines table
+            if (vaccine == null) {
                 vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
                 vaccine.saveToDB();
-            } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
-            }
-        } else {
-            // if the vaccine is not null, meaning that the vaccine already exists in our table
-            try {
+            } else {
+                // if the vaccine is not null, meaning that the vaccine already exists in our table
                 vaccine.increaseAvailableDoses(doses);
-            } catch (SQLException e) {
-                System.out.println("Error occurred when adding doses");
-                e.printStackTrace();
             }
+        } catch (SQLException e) {
+            session.fail("Error occurred when adding doses");
+            e.printStackTrace();
+            return;
         }
-        System.out.println("Doses updated!");
+        session.println("Doses updated!");
+        waitlist.dosesAdded(vaccineName);
     }
 
-    private static void showAppointments(String[] tokens) {
-        // TODO: Part 2
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first");
+    // show_appointments [from] [to] [limit] [after_id]
+    // pages through the user's appointments in id order; "-" leaves a date bound open and
+    // after_id is the last id of the previous page
+    private static void showAppointments(Session session, String[] tokens) {
+        boolean isPatient = (session.getPatient() != null);
+        Date from = FIRST_DATE;
+        Date to = LAST_DATE;
+        int limit = APPOINTMENT_PAGE_SIZE;
+        int afterId = 0;
+        try {
+            if (tokens.length > 1 && !tokens[1].equals("-")) {
+                from = Date.valueOf(tokens[1]);
+            }
+            if (tokens.length > 2 && !tokens[2].equals("-")) {
+                to = Date.valueOf(tokens[2]);
+            }
+            if (tokens.length > 3) {
+                limit = Integer.parseInt(tokens[3]);
+            }
+            if (tokens.length > 4) {
+                afterId = Integer.parseInt(tokens[4]);
+            }
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException is an IllegalArgumentException too
+            session.fail("Please try again!");
+            return;
+        }
+        if (limit <= 0) {
+            session.fail("Please try again!");
             return;
         }
-        boolean isPatient = (currentPatient != null);
-        String username = isPatient ? currentPatient.getUsername() : currentCaregiver.getUsername();
 
         ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
 
-        PreparedStatement statement = null;
+        // keyset pagination: each page starts after the last id shown, so a page costs the same
+        // however much history comes before it
+        String columns = isPatient
+                ? "SELECT Appointment_id, Vaccine, Time, Caregiver_name AS Other_name FROM "
+                : "SELECT Appointment_id, Vaccine, Time, Patient_name AS Other_name FROM ";
+        String filter = isPatient
+                ? " WHERE Patient_name = ? AND Appointment_id > ? AND Time >= ? AND Time <= ?"
+                : " WHERE Caregiver_name = ? AND Appointment_id > ? AND Time >= ? AND Time <= ?";
+        PrintWriter out = session.getOut();
         try {
-        if (isPatient) {
-            String selectPatient = "SELECT a.Appointment_id, a.Vaccine, a.Time, a.Caregiver_name FROM Appointments a WHERE a.Patient_name = ? ORDER BY a.Appointment_id";
-            statement = con.prepareStatement(selectPatient);
-            statement.setString(1, currentPatient.getUsername());
-        }
-        else {
-            String selectCaregiver = "SELECT a.Appointment_id, a.Vaccine, a.Time, a.Patient_name FROM Appointments a WHERE Caregiver_name = ? ORDER BY a.Appointment_id";
-            statement = con.prepareStatement(selectCaregiver);
-            statement.setString(1, currentCaregiver.getUsername());
-        }
-        ResultSet rs = statement.executeQuery();
-        boolean hasAppointments = false;
-
-        while (rs.next()) {
-            hasAppointments = true;
-            int appointmentId = rs.getInt("Appointment_id");
-            String vaccineName = rs.getString("Name");
-            Date appointmentDate = rs.getDate("Time");
-
-            if (isPatient) {
-                String caregiverName = rs.getString("Caregiver_name");
-                System.out.println("Caregiver name: " + caregiverName);
+            // archived months the range covers are read too, every one of them for an open range;
+            // until something is archived this stays a plain query on the hot table. Looked up
+            // before taking our connection, since the first lookup loads the list through its own
+            List<String> tables = new ArrayList<>();
+            tables.add("Appointments");
+            tables.addAll(archive.tablesBetween(from, to));
+            cm.createConnection();
+            String sql;
+            if (tables.size() == 1) {
+                sql = columns + "Appointments" + filter + " ORDER BY Appointment_id LIMIT ?";
             } else {
-                String patientName = rs.getString("Patient_name");
-                System.out.println("Patient name: " + patientName);
+                StringJoiner union = new StringJoiner(" UNION ALL ", "SELECT * FROM (", ") AS History");
+                for (String table : tables) {
+                    union.add(columns + table + filter);
+                }
+                sql = union + " ORDER BY Appointment_id LIMIT ?";
+            }
+            PreparedStatement statement = cm.prepareStatement(sql);
+            int index = 1;
+            for (int i = 0; i < tables.size(); i++) {
+                statement.setString(index++, session.getUsername());
+                statement.setInt(index++, afterId);
+                statement.setDate(index++, from);
+                statement.setDate(index++, to);
+            }
+            // one extra row tells us whether there is another page
+            statement.setInt(index, limit + 1);
+            statement.setFetchSize(Math.min(limit + 1, FETCH_SIZE));
+
+            int shown = 0;
+            int lastId = afterId;
+            boolean more = false;
+            // rows are written straight to the session writer and flushed once at the end
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (shown == limit) {
+                        more = true;
+                        break;
+                    }
+                    lastId = rs.getInt("Appointment_id");
+                    out.write(lastId + " " + rs.getString("Vaccine") + " " + rs.getDate("Time") + " "
+                            + rs.getString("Other_name"));
+                    out.write(System.lineSeparator());
+                    shown++;
+                }
+            }
+            if (shown == 0) {
+                out.println("No appointments found.");
+            } else if (more) {
+                out.println("More appointments: show_appointments " + tokenOrDash(from, FIRST_DATE) + " "
+                        + tokenOrDash(to, LAST_DATE) + " " + limit + " " + lastId);
             }
-        }
-        if (!hasAppointments) {
-            System.out.println("No appointments found.");
-        }
         } catch (SQLException e) {
-            System.out.println("Error occurred when showing appointments");
+            session.fail("Error occurred when showing appointments");
             e.printStackTrace();
         } finally {
+            out.flush();
             cm.closeConnection();
         }
     }
 
-    private static void logout(String[] tokens) {
-        // TODO: Part 2
-        if (currentCaregiver == null && currentPatient == null) {
-            System.out.println("Please login first");
+    // archive_appointments <cutoff_date>
+    // moves every appointment dated before the cutoff into the monthly archive tables
+    private static void archiveAppointments(Session session, String[] tokens) {
+        Date cutoff;
+        try {
+            cutoff = Date.valueOf(tokens[1]);
+        } catch (IllegalArgumentException e) {
+            session.fail("Please enter a valid date!");
             return;
         }
-        if (tokens.length != 1) {
-            System.out.println("Please try again");
+        try {
+            int moved = archive.archive(cutoff);
+            session.println("Archived " + moved + " appointments before " + cutoff);
+        } catch (SQLException e) {
+            session.fail("Error occurred when archiving appointments");
+            e.printStackTrace();
+        }
+    }
+
+    private static String tokenOrDash(Date date, Date open) {
+        return date.equals(open) ? "-" : date.toString();
+    }
+
+    // stats [reset]
+    // latency percentiles per command and per kind of database call, the statements that took
+    // the most time in total, and pool state
+    private static void stats(Session session, String[] tokens) {
+        if (tokens.length > 1) {
+            if (!tokens[1].equals("reset")) {
+                session.fail("Please try again!");
+                return;
+            }
+            Metrics.reset();
+            SqlStats.reset();
+            session.println("Statistics reset");
             return;
         }
-        currentCaregiver = null;
-        currentPatient = null;
+        PrintWriter out = session.getOut();
+        out.printf("%-32s %9s %9s %9s %9s %9s %9s%n", "latency (ms)", "count", "mean", "p50", "p99", "p999", "max");
+        for (LatencyHistogram histogram : Metrics.histograms()) {
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.printf("%-32s %9d %9.3f %9.3f %9.3f %9.3f %9.3f%n", histogram.getName(), histogram.getCount(),
+                    histogram.getMeanMillis(), histogram.getP50Millis(), histogram.getP99Millis(),
+                    histogram.getP999Millis(), histogram.getMaxMillis());
+        }
+        List<SqlStats> statements = SqlStats.top(STATS_TOP_STATEMENTS);
+        if (!statements.isEmpty()) {
+            out.printf("%-10s %12s %12s  %s%n", "executions", "total ms", "rows", "statement");
+            for (SqlStats statement : statements) {
+                out.printf("%10d %12.3f %12d  %s%n", statement.getExecutions(), statement.getTotalNanos() / 1e6,
+                        statement.getRows(), statement.getSql().replaceAll("\\s+", " ").trim());
+            }
+        }
+        ConnectionPool pool = ConnectionManager.getPool();
+        out.println("Connection pool: " + pool.getLeasedCount() + " leased, " + pool.getIdleCount() + " idle, "
+                + pool.getWaitingCount() + " waiting, max " + pool.getMaxSize());
+        out.println("Statement cache: " + pool.getStatementCacheHits() + " hits, "
+                + pool.getStatementCacheMisses() + " misses");
+        out.println("Waitlist: " + waitlist.getWaitingCount() + " waiting, "
+                + waitlist.getMatchedCount() + " booked from the waitlist");
+        out.flush();
+    }
+
+    private static void logout(Session session, String[] tokens) {
+        SessionStore.getInstance().close(session.getToken());
+        session.logout();
 
-        System.out.println("Successfully logged out");
+        session.println("Successfully logged out");
     }
 }
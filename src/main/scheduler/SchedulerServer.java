@@ -0,0 +1,66 @@
+package scheduler;
+
+import scheduler.session.Session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the scheduler command protocol over a local TCP socket. Every connection gets its own
+ * Session and runs the same command loop as the console, so each client logs in and out
+ * independently while all of them share the connection pool and in-memory indexes.
+ */
+public class SchedulerServer {
+
+    private final int port;
+    private final ExecutorService clients = newClientExecutor();
+
+    public SchedulerServer(int port) {
+        this.port = port;
+    }
+
+    public void serve() throws IOException {
+        try (ServerSocket server = new ServerSocket(port, 128, InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + server.getLocalSocketAddress());
+            while (true) {
+                Socket socket = server.accept();
+                clients.execute(() -> handle(socket));
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private static void handle(Socket socket) {
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                     new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            Session session = new Session(out);
+            Scheduler.printGreeting(session);
+            Scheduler.run(session, in);
+        } catch (IOException e) {
+            System.out.println("Client connection failed: " + e.getMessage());
+        }
+    }
+
+    // a client spends nearly all its time blocked on its socket or the database, which is what
+    // virtual threads are for; on JDKs before 21 fall back to a thread per client
+    private static ExecutorService newClientExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package scheduler.cache;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * In-memory copy of the Availabilities table: for each date, the sorted set of caregivers that
+ * are free on it. It is loaded once from the database and then kept current by the code paths
+ * that write Availabilities, so lookups by date never go to the database.
+ *
+ * Reserve claims a caregiver here first with claim(), which succeeds for exactly one caller, and
+ * gives the slot back with release() if its transaction does not commit.
+ */
+public class AvailabilityIndex {
+
+    private static final AvailabilityIndex instance = new AvailabilityIndex();
+
+    private static final String LOAD = "SELECT Time, Username FROM Availabilities";
+
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentSkipListSet<String>> byDate =
+            new ConcurrentSkipListMap<>();
+    private volatile boolean loaded = false;
+
+    public static AvailabilityIndex getInstance() {
+        return instance;
+    }
+
+    public synchronized void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease();
+             ResultSet resultSet = lease.prepareStatement(LOAD).executeQuery()) {
+            while (resultSet.next()) {
+                add(resultSet.getDate("Time"), resultSet.getString("Username"));
+            }
+        }
+        loaded = true;
+    }
+
+    // sorted, read-only view of the caregivers free on the date
+    public NavigableSet<String> caregivers(Date date) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        ConcurrentSkipListSet<String> usernames = byDate.get(date.toLocalDate());
+        if (usernames == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return Collections.unmodifiableNavigableSet(usernames);
+    }
+
+    // view of the dates from..to inclusive, in date order, each with its free caregivers; a date
+    // can map to an empty set once its last slot has been booked. Callers must not modify the sets
+    public NavigableMap<LocalDate, NavigableSet<String>> caregivers(Date from, Date to) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        return Collections.unmodifiableNavigableMap(
+                byDate.subMap(from.toLocalDate(), true, to.toLocalDate(), true));
+    }
+
+    public void add(Date date, String username) {
+        byDate.computeIfAbsent(date.toLocalDate(), key -> new ConcurrentSkipListSet<>()).add(username);
+    }
+
+    public void remove(Date date, String username) {
+        ConcurrentSkipListSet<String> usernames = byDate.get(date.toLocalDate());
+        if (usernames != null) {
+            usernames.remove(username);
+        }
+    }
+
+    // returns true for exactly one caller per free slot
+    public boolean claim(Date date, String username) {
+        ConcurrentSkipListSet<String> usernames = byDate.get(date.toLocalDate());
+        return usernames != null && usernames.remove(username);
+    }
+
+    public void release(Date date, String username) {
+        add(date, username);
+    }
+}
@@ -0,0 +1,111 @@
+package scheduler.cache;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.util.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over the usernames of one table. mightContain() never returns false for a name
+ * that was loaded or added, so a false answer lets signup skip the database lookup; a true answer
+ * still has to be confirmed with a query. Sized for ExpectedUsers names at about a 1% false
+ * positive rate. The primary key is still what rejects a name another process inserted since the
+ * filter was loaded.
+ */
+public class UsernameFilter {
+
+    private static final UsernameFilter patients = new UsernameFilter("Patients");
+    private static final UsernameFilter caregivers = new UsernameFilter("Caregivers");
+
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final String table;
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+    private volatile boolean loaded = false;
+
+    public UsernameFilter(String table) {
+        this(table, Config.getInt("ExpectedUsers", 100_000));
+    }
+
+    public UsernameFilter(String table, int expectedUsers) {
+        this.table = table;
+        double ln2 = Math.log(2);
+        long size = (long) Math.ceil(-expectedUsers * Math.log(FALSE_POSITIVE_RATE) / (ln2 * ln2));
+        this.bitCount = (int) Math.max(64, Math.min(size, Integer.MAX_VALUE - 63));
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUsers * ln2));
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+    }
+
+    public static UsernameFilter patients() {
+        return patients;
+    }
+
+    public static UsernameFilter caregivers() {
+        return caregivers;
+    }
+
+    public synchronized void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease();
+             ResultSet resultSet = lease.prepareStatement("SELECT Username FROM " + table).executeQuery()) {
+            while (resultSet.next()) {
+                add(resultSet.getString("Username"));
+            }
+        }
+        loaded = true;
+    }
+
+    public boolean mightContain(String username) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(String username) {
+        long hash = hash(username);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long current;
+            do {
+                current = bits.get(word);
+            } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with a murmur3 mix so both halves are usable
+    private static long hash(String username) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : username.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
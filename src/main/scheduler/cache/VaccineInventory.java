@@ -0,0 +1,272 @@
+package scheduler.cache;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Authoritative in-memory dose counts, one atomic counter per vaccine. Dose changes only touch
+ * memory; the change since the last flush is kept per vaccine and written back as
+ * Doses = Doses + delta in one batched transaction every FlushIntervalMillis, and once more
+ * before the connection pool shuts down.
+ *
+ * When other processes write the same Vaccines table, set VaccineMaxStalenessMillis. Reads then
+ * re-read the table once the copy is older than that and fold in what the other processes changed,
+ * and a name that is not cached is looked up in the table before it is treated as unknown. With
+ * the default of 0 this process is assumed to be the only writer and the table is read once.
+ * Stock taken by two processes within one staleness window can oversell.
+ */
+public class VaccineInventory {
+
+    private static final VaccineInventory instance = new VaccineInventory();
+
+    private static final String LOAD = "SELECT Name, Doses FROM Vaccines";
+    private static final String LOAD_ONE = "SELECT Doses FROM Vaccines WHERE Name = ?";
+    private static final String APPLY_DELTA = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+    private static final String CREATE = ConnectionManager.getDialect().equals("sqlite")
+            ? "INSERT OR IGNORE INTO Vaccines VALUES (?, 0)"
+            : "INSERT INTO Vaccines VALUES (?, 0) ON CONFLICT DO NOTHING";
+
+    private static final class Stock {
+        private final AtomicInteger doses;
+        // change not yet written to the Vaccines table
+        private final AtomicInteger pending = new AtomicInteger();
+        // the table's Doses as of the last load, flush or refresh; only changed while holding
+        // the inventory's lock
+        private int base;
+
+        private Stock(int doses) {
+            this.doses = new AtomicInteger(doses);
+            this.base = doses;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Stock> stocks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap.KeySetView<String, Boolean> dirty = ConcurrentHashMap.newKeySet();
+    private final long maxStalenessMillis = Config.getLong("VaccineMaxStalenessMillis", 0);
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile boolean loaded = false;
+    private volatile long refreshedAt;
+
+    private VaccineInventory() {
+        long interval = Config.getLong("FlushIntervalMillis", 500);
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vaccine-inventory-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        ConnectionManager.beforeShutdown(this::flushQuietly);
+    }
+
+    public static VaccineInventory getInstance() {
+        return instance;
+    }
+
+    public synchronized void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease();
+             ResultSet resultSet = lease.prepareStatement(LOAD).executeQuery()) {
+            while (resultSet.next()) {
+                stocks.putIfAbsent(resultSet.getString("Name"), new Stock(resultSet.getInt("Doses")));
+            }
+        }
+        refreshedAt = System.currentTimeMillis();
+        loaded = true;
+    }
+
+    // folds changes other processes made to the table into the cached counts; our own unflushed
+    // changes are kept because only the difference from the last known table value is applied
+    public synchronized void refresh() throws SQLException {
+        // writing ours first means the table holds everything this process knows about
+        flush();
+        try (PooledConnection lease = ConnectionManager.lease();
+             ResultSet resultSet = lease.prepareStatement(LOAD).executeQuery()) {
+            while (resultSet.next()) {
+                String name = resultSet.getString("Name");
+                int doses = resultSet.getInt("Doses");
+                Stock stock = stocks.putIfAbsent(name, new Stock(doses));
+                if (stock != null && stock.base != doses) {
+                    stock.doses.addAndGet(doses - stock.base);
+                    stock.base = doses;
+                }
+            }
+        }
+        refreshedAt = System.currentTimeMillis();
+    }
+
+    // returns null if there is no such vaccine
+    public Integer getDoses(String vaccineName) throws SQLException {
+        Stock stock = stock(vaccineName);
+        return stock == null ? null : stock.doses.get();
+    }
+
+    // vaccines with at least one dose left, sorted by name
+    public Map<String, Integer> available() throws SQLException {
+        ensureFresh();
+        Map<String, Integer> available = new TreeMap<>();
+        for (Map.Entry<String, Stock> entry : stocks.entrySet()) {
+            int doses = entry.getValue().doses.get();
+            if (doses > 0) {
+                available.put(entry.getKey(), doses);
+            }
+        }
+        return available;
+    }
+
+    // makes sure the vaccine exists, inserting its row with no doses if there is none yet. Callers
+    // that race to create the same vaccine, here or in another process, all end up with the one
+    // row and the one cached count, and add their doses to it afterwards
+    public void create(String vaccineName) throws SQLException {
+        if (stock(vaccineName) != null) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            PreparedStatement insert = lease.prepareStatement(CREATE);
+            insert.setString(1, vaccineName);
+            insert.executeUpdate();
+        }
+        readThrough(vaccineName);
+    }
+
+    // returns the new dose count, or -1 if there is no such vaccine
+    public int add(String vaccineName, int num) throws SQLException {
+        Stock stock = stock(vaccineName);
+        if (stock == null) {
+            return -1;
+        }
+        int doses = stock.doses.addAndGet(num);
+        stock.pending.addAndGet(num);
+        dirty.add(vaccineName);
+        return doses;
+    }
+
+    // takes num doses if that many are left; the count never goes below zero
+    public boolean take(String vaccineName, int num) throws SQLException {
+        Stock stock = stock(vaccineName);
+        if (stock == null) {
+            return false;
+        }
+        while (true) {
+            int doses = stock.doses.get();
+            if (doses < num) {
+                return false;
+            }
+            if (stock.doses.compareAndSet(doses, doses - num)) {
+                stock.pending.addAndGet(-num);
+                dirty.add(vaccineName);
+                return true;
+            }
+        }
+    }
+
+    // writes all pending changes in one transaction; changes that fail to write stay pending
+    public synchronized void flush() throws SQLException {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        List<Integer> deltas = new ArrayList<>();
+        for (String name : dirty) {
+            dirty.remove(name);
+            int delta = stocks.get(name).pending.getAndSet(0);
+            if (delta != 0) {
+                names.add(name);
+                deltas.add(delta);
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement statement = lease.prepareStatement(APPLY_DELTA);
+            for (int i = 0; i < names.size(); i++) {
+                statement.setInt(1, deltas.get(i));
+                statement.setString(2, names.get(i));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+            for (int i = 0; i < names.size(); i++) {
+                stocks.get(names.get(i)).base += deltas.get(i);
+            }
+        } catch (SQLException e) {
+            for (int i = 0; i < names.size(); i++) {
+                stocks.get(names.get(i)).pending.addAndGet(deltas.get(i));
+                dirty.add(names.get(i));
+            }
+            throw e;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.out.println("Error occurred when writing vaccine doses, will retry");
+            e.printStackTrace();
+        }
+    }
+
+    private Stock stock(String vaccineName) throws SQLException {
+        ensureFresh();
+        Stock stock = stocks.get(vaccineName);
+        if (stock == null && maxStalenessMillis > 0) {
+            // another process may have created it since we last looked
+            stock = readThrough(vaccineName);
+        }
+        return stock;
+    }
+
+    private void ensureFresh() throws SQLException {
+        if (!loaded) {
+            load();
+            return;
+        }
+        if (maxStalenessMillis <= 0 || System.currentTimeMillis() - refreshedAt < maxStalenessMillis) {
+            return;
+        }
+        // one caller refreshes, the others carry on with the current counts meanwhile
+        if (refreshing.compareAndSet(false, true)) {
+            try {
+                refresh();
+            } finally {
+                refreshing.set(false);
+            }
+        }
+    }
+
+    private Stock readThrough(String vaccineName) throws SQLException {
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            PreparedStatement statement = lease.prepareStatement(LOAD_ONE);
+            statement.setString(1, vaccineName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                Stock stock = new Stock(resultSet.getInt("Doses"));
+                Stock existing = stocks.putIfAbsent(vaccineName, stock);
+                return existing == null ? stock : existing;
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package scheduler.command;
+
+import scheduler.metrics.LatencyHistogram;
+import scheduler.metrics.Metrics;
+import scheduler.session.Session;
+
+/**
+ * One verb of the scheduler protocol: its handler plus the checks every invocation goes through
+ * before the handler runs, namely who has to be logged in and how many arguments it takes.
+ */
+public class Command {
+
+    public enum Role {
+        ANYONE,
+        LOGGED_OUT,
+        LOGGED_IN,
+        PATIENT,
+        CAREGIVER
+    }
+
+    public interface Handler {
+        void run(Session session, String[] tokens);
+    }
+
+    private final String name;
+    private final String usage;
+    private final int minArgs;
+    private final int maxArgs;
+    private final Role role;
+    private final String notLoggedInMessage;
+    private final String wrongRoleMessage;
+    private final String badArgsMessage;
+    private final boolean endsSession;
+    private final Handler handler;
+    private final LatencyHistogram latency;
+
+    private Command(CommandBuilder builder) {
+        this.name = builder.name;
+        this.usage = builder.usage;
+        this.minArgs = builder.minArgs;
+        this.maxArgs = builder.maxArgs;
+        this.role = builder.role;
+        this.notLoggedInMessage = builder.notLoggedInMessage;
+        this.wrongRoleMessage = builder.wrongRoleMessage;
+        this.badArgsMessage = builder.badArgsMessage;
+        this.endsSession = builder.endsSession;
+        this.handler = builder.handler;
+        this.latency = Metrics.histogram("command." + builder.name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getUsage() {
+        return usage.isEmpty() ? name : name + " " + usage;
+    }
+
+    public boolean endsSession() {
+        return endsSession;
+    }
+
+    // tokens[0] is the command name itself
+    public void execute(Session session, String[] tokens) {
+        long start = System.nanoTime();
+        try {
+            String refusal = check(session, tokens.length - 1);
+            if (refusal != null) {
+                session.fail(refusal);
+                return;
+            }
+            handler.run(session, tokens);
+        } finally {
+            latency.recordSince(start);
+        }
+    }
+
+    private String check(Session session, int args) {
+        switch (role) {
+            case LOGGED_OUT:
+                if (session.isLoggedIn()) {
+                    return wrongRoleMessage;
+                }
+                break;
+            case LOGGED_IN:
+                if (!session.isLoggedIn()) {
+                    return notLoggedInMessage;
+                }
+                break;
+            case PATIENT:
+                if (!session.isLoggedIn()) {
+                    return notLoggedInMessage;
+                }
+                if (session.getPatient() == null) {
+                    return wrongRoleMessage;
+                }
+                break;
+            case CAREGIVER:
+                if (!session.isLoggedIn()) {
+                    return notLoggedInMessage;
+                }
+                if (session.getCaregiver() == null) {
+                    return wrongRoleMessage;
+                }
+                break;
+            default:
+                break;
+        }
+        if (args < minArgs || args > maxArgs) {
+            return badArgsMessage;
+        }
+        return null;
+    }
+
+    public static class CommandBuilder {
+        private final String name;
+        private final Handler handler;
+        private String usage = "";
+        private int minArgs = 0;
+        private int maxArgs = Integer.MAX_VALUE;
+        private Role role = Role.ANYONE;
+        private String notLoggedInMessage = "Please login first";
+        private String wrongRoleMessage = "Please try again!";
+        private String badArgsMessage = "Please try again!";
+        private boolean endsSession = false;
+
+        public CommandBuilder(String name, Handler handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        // usage is the argument part shown in the command list, e.g. "<date> <vaccine>"
+        public CommandBuilder usage(String usage) {
+            this.usage = usage;
+            return this;
+        }
+
+        public CommandBuilder args(int count, String badArgsMessage) {
+            return args(count, count, badArgsMessage);
+        }
+
+        public CommandBuilder args(int min, int max, String badArgsMessage) {
+            this.minArgs = min;
+            this.maxArgs = max;
+            this.badArgsMessage = badArgsMessage;
+            return this;
+        }
+
+        public CommandBuilder role(Role role, String notLoggedInMessage, String wrongRoleMessage) {
+            this.role = role;
+            this.notLoggedInMessage = notLoggedInMessage;
+            this.wrongRoleMessage = wrongRoleMessage;
+            return this;
+        }
+
+        public CommandBuilder endsSession() {
+            this.endsSession = true;
+            return this;
+        }
+
+        public Command build() {
+            return new Command(this);
+        }
+    }
+}
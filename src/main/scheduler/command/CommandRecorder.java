@@ -0,0 +1,52 @@
+package scheduler.command;
+
+import scheduler.session.Session;
+import scheduler.util.Config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends every command line a client sends to a file, as lines of the form
+ * session-id TAB command, so the stream can be replayed later by scheduler.tools.LoadReplay.
+ * Enabled by setting RecordFile. Recordings hold passwords as typed, so only record sessions
+ * that use test accounts.
+ */
+public class CommandRecorder {
+
+    private final BufferedWriter writer;
+
+    private CommandRecorder(BufferedWriter writer) {
+        this.writer = writer;
+    }
+
+    // the recorder configured by RecordFile, or null when recording is off
+    public static CommandRecorder fromConfig() {
+        String file = Config.get("RecordFile", null);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new CommandRecorder(Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        } catch (IOException e) {
+            System.out.println("Could not open " + file + " for recording, commands will not be recorded");
+            return null;
+        }
+    }
+
+    public synchronized void record(Session session, String line) {
+        try {
+            writer.write(session.getId() + "\t" + line);
+            writer.newLine();
+            // flushed per line so a recording survives the process being killed
+            writer.flush();
+        } catch (IOException e) {
+            System.out.println("Could not record command: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package scheduler.command;
+
+import scheduler.session.Session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// maps each verb to its command, in the order the commands were registered
+public class CommandRegistry {
+
+    private final Map<String, Command> commands = new HashMap<>();
+    private final List<Command> ordered = new ArrayList<>();
+
+    public CommandRegistry register(Command command) {
+        if (commands.putIfAbsent(command.getName(), command) != null) {
+            throw new IllegalArgumentException("Command registered twice: " + command.getName());
+        }
+        ordered.add(command);
+        return this;
+    }
+
+    public List<Command> getCommands() {
+        return Collections.unmodifiableList(ordered);
+    }
+
+    // runs one input line, returns false once the session should end
+    public boolean dispatch(Session session, String line) {
+        String[] tokens = Tokenizer.split(line);
+        // check if input exists
+        if (tokens.length == 0) {
+            session.fail("Please try again!");
+            return true;
+        }
+        Command command = commands.get(tokens[0]);
+        if (command == null) {
+            session.fail("Invalid operation name!");
+            return true;
+        }
+        try {
+            command.execute(session, tokens);
+        } catch (RuntimeException e) {
+            // a bug in one command must not take the whole session, or a server client, down
+            session.fail("Please try again!");
+            e.printStackTrace();
+            return true;
+        }
+        return !command.endsSession();
+    }
+}
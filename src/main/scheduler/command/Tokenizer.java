@@ -0,0 +1,40 @@
+package scheduler.command;
+
+// splits a command line on runs of spaces and tabs without going through a regex
+public class Tokenizer {
+
+    private static final String[] EMPTY = new String[0];
+
+    public static String[] split(String line) {
+        int count = 0;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            if (!isSeparator(line.charAt(i)) && (i == 0 || isSeparator(line.charAt(i - 1)))) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return EMPTY;
+        }
+        String[] tokens = new String[count];
+        int next = 0;
+        int i = 0;
+        while (i < length) {
+            while (i < length && isSeparator(line.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSeparator(line.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                tokens[next++] = line.substring(start, i);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
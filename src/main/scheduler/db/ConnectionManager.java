@@ -1,38 +1,92 @@
 package scheduler.db;
 
+import scheduler.metrics.Metrics;
+import scheduler.util.Config;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class ConnectionManager {
 
-    private final String driverName = "org.sqlite.JDBC";
-    private final String connectionUrl = "jdbc:sqlite:" + System.getenv("DBPath");
+    // picks the resources/<dialect> directory that schema migrations are read from
+    private static final String dialect = "sqlite";
+    private static final String driverName = "org.sqlite.JDBC";
+    private static final String connectionUrl = "jdbc:sqlite:" + Config.get("DBPath", null);
 
-    private Connection con = null;
+    // one pool per process; the driver is loaded once when the pool is created
+    private static final ConnectionPool pool;
+    private static final List<Runnable> shutdownTasks = new CopyOnWriteArrayList<>();
 
-    public ConnectionManager() {
+    static {
         try {
             Class.forName(driverName);
         } catch (ClassNotFoundException e) {
             System.out.println(e.toString());
         }
+        pool = new ConnectionPool(() -> DriverManager.getConnection(connectionUrl),
+                Config.getInt("PoolSize", 8),
+                Config.getLong("PoolMaxWaitMillis", 5000),
+                Config.getLong("PoolMaxIdleMillis", 5 * 60 * 1000),
+                Config.getLong("PoolValidationIntervalMillis", 1000));
+        Metrics.register("type=ConnectionPool", pool);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (Runnable task : shutdownTasks) {
+                task.run();
+            }
+            pool.close();
+        }));
     }
 
-    public Connection createConnection() {
-        try {
-            con = DriverManager.getConnection(connectionUrl);
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+    private PooledConnection lease = null;
+    private Connection con = null;
+
+    public ConnectionManager() {
+    }
+
+    // leases a connection that goes back to the pool when the lease is closed,
+    // meant for try-with-resources
+    public static PooledConnection lease() throws SQLException {
+        return pool.borrow();
+    }
+
+    // runs at JVM shutdown while the pool can still hand out connections
+    public static void beforeShutdown(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
+    public static String getDialect() {
+        return dialect;
+    }
+
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+
+    // throws when no connection can be borrowed, e.g. the pool timed out
+    public Connection createConnection() throws SQLException {
+        lease = pool.borrow();
+        con = lease.getConnection();
         return con;
     }
 
+    // prepares through the statement cache of the leased connection; the statement stays
+    // open for reuse, so callers must not close it
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (lease == null) {
+            throw new SQLException("No connection has been created");
+        }
+        return lease.prepareStatement(sql);
+    }
+
     public void closeConnection() {
-        try {
-            this.con.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (lease != null) {
+            lease.close();
+            lease = null;
+            con = null;
         }
     }
 }
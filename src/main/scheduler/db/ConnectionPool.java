@@ -0,0 +1,160 @@
+package scheduler.db;
+
+import scheduler.metrics.Metrics;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of JDBC connections. At most maxSize connections are leased at once; callers
+ * wait up to maxWaitMillis for one to come back. Idle connections are kept most-recently-used
+ * first, checked with Connection.isValid() when they have been idle for a while, and closed once
+ * they have been idle longer than maxIdleMillis.
+ */
+public class ConnectionPool implements ConnectionPoolMXBean {
+
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long maxWaitMillis;
+    private final long maxIdleMillis;
+    private final long validationIntervalMillis;
+    private final Semaphore permits;
+
+    // guarded by this; the head is the most recently returned connection
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private volatile boolean closed = false;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, long maxWaitMillis,
+                          long maxIdleMillis, long validationIntervalMillis) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive!");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.maxWaitMillis = maxWaitMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.validationIntervalMillis = validationIntervalMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public PooledConnection borrow() throws SQLException {
+        long start = System.nanoTime();
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTimeoutException("Timed out after " + maxWaitMillis + "ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection pooled;
+            while ((pooled = pollIdle()) != null) {
+                long idleFor = System.currentTimeMillis() - pooled.getLastUsed();
+                if (idleFor > maxIdleMillis) {
+                    pooled.discard();
+                } else if (idleFor > validationIntervalMillis && !pooled.isValid()) {
+                    pooled.discard();
+                } else {
+                    Metrics.DB_ACQUIRE.recordSince(start);
+                    return pooled.markLeased();
+                }
+            }
+            pooled = new PooledConnection(factory.open(), this).markLeased();
+            Metrics.DB_ACQUIRE.recordSince(start);
+            return pooled;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(PooledConnection pooled) {
+        try {
+            if (pooled.reset() && !closed) {
+                synchronized (this) {
+                    idle.addFirst(pooled);
+                }
+            } else {
+                pooled.discard();
+            }
+        } finally {
+            permits.release();
+        }
+        evictIdle();
+    }
+
+    @Override
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    @Override
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public int getLeasedCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    @Override
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return StatementCache.getTotalHits();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return StatementCache.getTotalMisses();
+    }
+
+    public void close() {
+        closed = true;
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (PooledConnection pooled : toClose) {
+            pooled.discard();
+        }
+    }
+
+    private synchronized PooledConnection pollIdle() {
+        return idle.pollFirst();
+    }
+
+    // the tail holds the connections that have been idle the longest
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - maxIdleMillis;
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            while (!idle.isEmpty() && idle.peekLast().getLastUsed() < cutoff) {
+                expired.add(idle.pollLast());
+            }
+        }
+        for (PooledConnection pooled : expired) {
+            pooled.discard();
+        }
+    }
+}
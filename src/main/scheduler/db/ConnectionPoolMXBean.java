@@ -0,0 +1,20 @@
+package scheduler.db;
+
+/**
+ * What JMX shows for the connection pool.
+ */
+public interface ConnectionPoolMXBean {
+
+    int getMaxSize();
+
+    int getIdleCount();
+
+    int getLeasedCount();
+
+    // threads blocked waiting for a connection
+    int getWaitingCount();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+}
@@ -0,0 +1,129 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out ids from blocks reserved in the Sequences table. Each refill bumps the sequence row
+ * by blockSize in one short transaction, and ids inside the block are handed out with an
+ * AtomicLong, so most calls never touch the database. Ids left in a block when the process stops
+ * are skipped, never reused.
+ *
+ * Callers on SQLite must not hold an open write transaction while calling next(): a refill needs
+ * the database write lock on a different pooled connection.
+ */
+public class IdAllocator {
+
+    private static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS Sequences (Name varchar(255), Next_value bigint, PRIMARY KEY (Name))";
+    private static final String BUMP = "UPDATE Sequences SET Next_value = Next_value + ? WHERE Name = ?";
+    private static final String READ = "SELECT Next_value FROM Sequences WHERE Name = ?";
+    private static final String SEED = "INSERT INTO Sequences VALUES (?, ?)";
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end;
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+
+    private final String name;
+    private final String seedQuery;
+    private final int blockSize;
+    private volatile Block block = new Block(0, 0);
+    private boolean tableChecked = false;
+
+    // seedQuery returns the highest id already in use, for when the sequence row does not exist yet
+    public IdAllocator(String name, String seedQuery, int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive!");
+        }
+        this.name = name;
+        this.seedQuery = seedQuery;
+        this.blockSize = blockSize;
+    }
+
+    public long next() throws SQLException {
+        while (true) {
+            Block current = block;
+            long id = current.next.getAndIncrement();
+            if (id < current.end) {
+                return id;
+            }
+            refill(current);
+        }
+    }
+
+    public int nextInt() throws SQLException {
+        return Math.toIntExact(next());
+    }
+
+    // makes sure the sequence row exists, so the seed query is never run again; call this before
+    // removing rows the seed query would count. The block reserved here is used by next()
+    public void ensureSeeded() throws SQLException {
+        Block current = block;
+        if (current.end == 0) {
+            refill(current);
+        }
+    }
+
+    private synchronized void refill(Block exhausted) throws SQLException {
+        // another thread may already have refilled while we waited for the lock
+        if (block != exhausted) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            if (!tableChecked) {
+                try (Statement statement = con.createStatement()) {
+                    statement.executeUpdate(CREATE_TABLE);
+                }
+                tableChecked = true;
+            }
+            con.setAutoCommit(false);
+            try {
+                long end = reserveBlock(lease);
+                con.commit();
+                block = new Block(end - blockSize, end);
+            } catch (SQLException e) {
+                con.rollback();
+                throw e;
+            }
+        }
+    }
+
+    // returns the exclusive end of the newly reserved block
+    private long reserveBlock(PooledConnection lease) throws SQLException {
+        PreparedStatement bump = lease.prepareStatement(BUMP);
+        bump.setLong(1, blockSize);
+        bump.setString(2, name);
+        if (bump.executeUpdate() == 0) {
+            long start = 1;
+            try (ResultSet resultSet = lease.prepareStatement(seedQuery).executeQuery()) {
+                if (resultSet.next()) {
+                    start = Math.max(1, resultSet.getLong(1) + 1);
+                }
+            }
+            PreparedStatement seed = lease.prepareStatement(SEED);
+            seed.setString(1, name);
+            seed.setLong(2, start + blockSize);
+            seed.executeUpdate();
+            return start + blockSize;
+        }
+        PreparedStatement read = lease.prepareStatement(READ);
+        read.setString(1, name);
+        try (ResultSet resultSet = read.executeQuery()) {
+            if (!resultSet.next()) {
+                throw new SQLException("Sequence " + name + " disappeared while allocating");
+            }
+            return resultSet.getLong("Next_value");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the database schema up to date at startup. Migrations are the numbered scripts listed,
+ * in order, in resources/<dialect>/migrations/migrations.list; the number before the first
+ * underscore of a script's name is its version. Each script newer than the highest version in
+ * Schema_version runs in its own transaction together with the row recording it, so a script
+ * is either fully applied and recorded or not at all.
+ *
+ * Scripts are split on semicolons after dropping "--" comment lines, so a statement must not
+ * contain a semicolon of its own.
+ */
+public class MigrationRunner {
+
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS Schema_version ("
+            + "Version int, Script varchar(255), Applied_at bigint, PRIMARY KEY (Version))";
+    private static final String CURRENT_VERSION = "SELECT MAX(Version) FROM Schema_version";
+    private static final String RECORD_VERSION = "INSERT INTO Schema_version VALUES (?, ?, ?)";
+
+    private final String resourceDirectory;
+    private final String fileDirectory;
+
+    public MigrationRunner() {
+        this(ConnectionManager.getDialect());
+    }
+
+    public MigrationRunner(String dialect) {
+        this.resourceDirectory = "/resources/" + dialect + "/migrations/";
+        // for running from a source checkout without the resources on the class path
+        this.fileDirectory = Config.get("MigrationsDir", "src/main/resources/" + dialect + "/migrations");
+    }
+
+    // applies every listed script newer than the database, returns how many were applied
+    public int migrate() throws IOException, SQLException {
+        List<String> scripts = new ArrayList<>();
+        for (String line : read("migrations.list").split("\\R")) {
+            if (!line.isBlank()) {
+                scripts.add(line.trim());
+            }
+        }
+        try (PooledConnection lease = ConnectionManager.lease();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.executeUpdate(CREATE_VERSION_TABLE);
+            int current;
+            try (ResultSet resultSet = statement.executeQuery(CURRENT_VERSION)) {
+                current = resultSet.next() ? resultSet.getInt(1) : 0;
+            }
+            int applied = 0;
+            for (String script : scripts) {
+                int version = version(script);
+                if (version <= current) {
+                    continue;
+                }
+                apply(lease, statement, script, version);
+                current = version;
+                applied++;
+            }
+            return applied;
+        }
+    }
+
+    private void apply(PooledConnection lease, Statement statement, String script, int version)
+            throws IOException, SQLException {
+        List<String> statements = statements(read(script));
+        Connection con = lease.getConnection();
+        con.setAutoCommit(false);
+        try {
+            for (String sql : statements) {
+                statement.executeUpdate(sql);
+            }
+            PreparedStatement record = lease.prepareStatement(RECORD_VERSION);
+            record.setInt(1, version);
+            record.setString(2, script);
+            record.setLong(3, System.currentTimeMillis());
+            record.executeUpdate();
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw new SQLException("Migration " + script + " failed", e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private String read(String name) throws IOException {
+        try (InputStream in = MigrationRunner.class.getResourceAsStream(resourceDirectory + name)) {
+            if (in != null) {
+                return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+        }
+        return Files.readString(Paths.get(fileDirectory, name));
+    }
+
+    private static int version(String script) {
+        int underscore = script.indexOf('_');
+        try {
+            return Integer.parseInt(underscore < 0 ? script : script.substring(0, underscore));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Migration " + script + " does not start with a version number");
+        }
+    }
+
+    // the statements of a script, without comment lines
+    static List<String> statements(String script) {
+        StringBuilder code = new StringBuilder();
+        for (String line : script.split("\\R")) {
+            if (!line.trim().startsWith("--")) {
+                code.append(line).append('\n');
+            }
+        }
+        List<String> statements = new ArrayList<>();
+        for (String sql : code.toString().split(";")) {
+            if (!sql.isBlank()) {
+                statements.add(sql.trim());
+            }
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,102 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A connection leased from a ConnectionPool. Closing the lease hands the connection back to the
+ * pool instead of closing the underlying JDBC connection. Callers get a traced view of the
+ * connection, so every statement they run is timed and counted; the pool's own housekeeping uses
+ * the driver's connection directly.
+ */
+public class PooledConnection implements AutoCloseable {
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final int STATEMENT_CACHE_SIZE = Config.getInt("StatementCacheSize", 32);
+
+    private final Connection connection;
+    private final Connection traced;
+    private final ConnectionPool pool;
+    private final StatementCache statementCache;
+    private long lastUsed;
+    private boolean leased;
+
+    PooledConnection(Connection connection, ConnectionPool pool) {
+        this.connection = connection;
+        this.traced = TracingConnection.wrap(connection);
+        this.pool = pool;
+        this.statementCache = new StatementCache(traced, STATEMENT_CACHE_SIZE);
+        this.lastUsed = System.currentTimeMillis();
+    }
+
+    public Connection getConnection() {
+        return traced;
+    }
+
+    // returns a cached statement for this connection; do not close it
+    public PreparedStatement prepareStatement(String sql) throws SQLException {
+        return statementCache.prepare(sql);
+    }
+
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    PooledConnection markLeased() {
+        leased = true;
+        return this;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    boolean isValid() {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    // closes leftover result sets and puts the connection back into auto-commit mode so the next
+    // borrower starts clean, returns false if the connection is no longer usable
+    boolean reset() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            statementCache.closeResults();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            lastUsed = System.currentTimeMillis();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    void discard() {
+        statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void close() {
+        // closing twice must not hand the same connection back twice
+        if (!leased) {
+            return;
+        }
+        leased = false;
+        pool.release(this);
+    }
+}
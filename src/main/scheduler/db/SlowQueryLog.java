@@ -0,0 +1,67 @@
+package scheduler.db;
+
+import scheduler.util.Config;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Writes statements that took longer than SlowQueryMillis to a rotating log, one line each with
+ * the elapsed time, rows, number of bind parameters and the SQL text. The files follow the
+ * SlowQueryLog pattern (a java.util.logging FileHandler pattern) and rotate after
+ * SlowQueryLogBytes bytes, keeping SlowQueryLogFiles of them. A negative threshold turns the log
+ * off and 0 logs every statement. The log file is only opened once something is slow.
+ */
+public class SlowQueryLog {
+
+    private static final long THRESHOLD_NANOS = Config.getLong("SlowQueryMillis", 100) * 1_000_000;
+    private static final Logger logger = Logger.getLogger("scheduler.db.slow");
+    private static volatile boolean opened = false;
+
+    private SlowQueryLog() {
+    }
+
+    public static boolean isEnabled() {
+        return THRESHOLD_NANOS >= 0;
+    }
+
+    static void record(String sql, int params, long rows, long nanos) {
+        if (THRESHOLD_NANOS < 0 || nanos < THRESHOLD_NANOS) {
+            return;
+        }
+        if (!opened) {
+            open();
+        }
+        logger.log(Level.WARNING, String.format("%.3f ms rows=%d params=%d %s",
+                nanos / 1e6, rows, params, sql.replaceAll("\\s+", " ").trim()));
+    }
+
+    private static synchronized void open() {
+        if (opened) {
+            return;
+        }
+        logger.setUseParentHandlers(false);
+        try {
+            FileHandler handler = new FileHandler(Config.get("SlowQueryLog", "slow-queries.%g.log"),
+                    Config.getInt("SlowQueryLogBytes", 10 * 1024 * 1024),
+                    Config.getInt("SlowQueryLogFiles", 5), true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return Instant.ofEpochMilli(record.getMillis()) + " " + record.getMessage()
+                            + System.lineSeparator();
+                }
+            });
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            // keep going without the log rather than failing the statement
+            System.out.println("Could not open the slow query log: " + e.getMessage());
+        }
+        opened = true;
+    }
+}
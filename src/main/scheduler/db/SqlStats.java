@@ -0,0 +1,79 @@
+package scheduler.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals for one SQL text across every statement run through a traced connection: how often it
+ * ran, how long it took altogether and how many rows it returned or changed. The statements with
+ * the largest total time are the first candidates for an index.
+ */
+public class SqlStats {
+
+    private static final class Totals {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+    }
+
+    private static final Map<String, Totals> bySql = new ConcurrentHashMap<>();
+
+    private final String sql;
+    private final long executions;
+    private final long totalNanos;
+    private final long rows;
+
+    private SqlStats(String sql, Totals totals) {
+        this.sql = sql;
+        this.executions = totals.executions.sum();
+        this.totalNanos = totals.nanos.sum();
+        this.rows = totals.rows.sum();
+    }
+
+    static void record(String sql, long rows, long nanos) {
+        Totals totals = bySql.get(sql);
+        if (totals == null) {
+            totals = bySql.computeIfAbsent(sql, k -> new Totals());
+        }
+        totals.executions.increment();
+        totals.nanos.add(nanos);
+        if (rows > 0) {
+            totals.rows.add(rows);
+        }
+    }
+
+    // the statements that took the most time in total, most expensive first
+    public static List<SqlStats> top(int limit) {
+        // sorted as a snapshot, the live totals keep moving while we sort
+        List<SqlStats> all = new ArrayList<>();
+        for (Map.Entry<String, Totals> entry : bySql.entrySet()) {
+            all.add(new SqlStats(entry.getKey(), entry.getValue()));
+        }
+        all.sort(Comparator.comparingLong(SqlStats::getTotalNanos).reversed());
+        return all.subList(0, Math.min(limit, all.size()));
+    }
+
+    public static void reset() {
+        bySql.clear();
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public long getExecutions() {
+        return executions;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+}
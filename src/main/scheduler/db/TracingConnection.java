@@ -0,0 +1,45 @@
+package scheduler.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps a JDBC connection so that the statements it creates are traced by TracingStatement.
+ * Everything else goes straight through to the driver's connection.
+ */
+class TracingConnection implements InvocationHandler {
+
+    private final Connection connection;
+
+    private TracingConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    static Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new TracingConnection(connection));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        Object result;
+        try {
+            result = method.invoke(connection, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+        switch (method.getName()) {
+            case "prepareStatement":
+                return TracingStatement.wrap((PreparedStatement) result, (String) args[0]);
+            case "createStatement":
+                return TracingStatement.wrap((Statement) result, null);
+            default:
+                return result;
+        }
+    }
+}
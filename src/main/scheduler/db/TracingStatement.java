@@ -0,0 +1,255 @@
+package scheduler.db;
+
+import scheduler.metrics.Metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Wraps a statement to trace every execution: the execute call is timed into the db.* latency
+ * histograms, and once the outcome is known (the update count, or the result set has been read
+ * to the end or closed) the SQL text, number of bind values, rows and elapsed time go to SqlStats
+ * and, past the threshold, the slow query log. Time spent reading a result set counts towards
+ * its query, since SQLite does most of the work in ResultSet.next(), but only up to the last
+ * next() call: a result set left open while the caller does something else is not charged for it.
+ *
+ * These are java.lang.reflect proxies, so every JDBC call through them allocates an argument
+ * array, boxes primitive arguments and goes through Method.invoke, and every query allocates a
+ * ResultSet proxy. That is a few small objects per call next to a database round trip, but it
+ * does mean the traced path is not allocation free the way the histograms themselves are.
+ */
+class TracingStatement implements InvocationHandler {
+
+    private final Statement statement;
+    // null for a plain Statement, whose SQL comes with each execute call
+    private final String preparedSql;
+    // highest bind index set since the last clearParameters()
+    private int params = 0;
+    private int batched = 0;
+    private String batchSql = null;
+    // the last query's results, until they have been read or closed
+    private TracedResults open = null;
+
+    private TracingStatement(Statement statement, String preparedSql) {
+        this.statement = statement;
+        this.preparedSql = preparedSql;
+    }
+
+    static Statement wrap(Statement statement, String sql) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, new TracingStatement(statement, sql));
+    }
+
+    static PreparedStatement wrap(PreparedStatement statement, String sql) {
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new TracingStatement(statement, sql));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "executeQuery":
+                return query(method, args);
+            case "execute":
+            case "executeUpdate":
+            case "executeLargeUpdate":
+                return update(method, args);
+            case "executeBatch":
+            case "executeLargeBatch":
+                return batch(method, args);
+            case "addBatch":
+                if (args != null) {
+                    batchSql = (String) args[0];
+                }
+                batched++;
+                break;
+            case "clearBatch":
+                batched = 0;
+                break;
+            case "clearParameters":
+                params = 0;
+                break;
+            case "close":
+                finishOpen();
+                break;
+            default:
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    params = Math.max(params, (Integer) args[0]);
+                }
+        }
+        return call(method, args);
+    }
+
+    private Object query(Method method, Object[] args) throws Throwable {
+        finishOpen();
+        long start = System.nanoTime();
+        ResultSet resultSet;
+        try {
+            resultSet = (ResultSet) call(method, args);
+        } finally {
+            Metrics.DB_QUERY.recordSince(start);
+        }
+        open = new TracedResults(resultSet, sql(args), params, start);
+        return open.proxy;
+    }
+
+    private Object update(Method method, Object[] args) throws Throwable {
+        finishOpen();
+        String sql = sql(args);
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(method, args);
+        } finally {
+            Metrics.DB_UPDATE.recordSince(start);
+        }
+        long rows;
+        if (result instanceof Boolean) {
+            // execute() returns true when there is a result set, which is not traced
+            rows = (Boolean) result ? -1 : statement.getUpdateCount();
+        } else {
+            rows = ((Number) result).longValue();
+        }
+        finish(sql, params, rows, System.nanoTime() - start);
+        return result;
+    }
+
+    private Object batch(Method method, Object[] args) throws Throwable {
+        finishOpen();
+        String sql = preparedSql != null ? preparedSql : batchSql;
+        int values = params * batched;
+        batched = 0;
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = call(method, args);
+        } finally {
+            Metrics.DB_BATCH.recordSince(start);
+        }
+        long rows = 0;
+        if (result instanceof int[]) {
+            for (int count : (int[]) result) {
+                rows += Math.max(count, 0);
+            }
+        } else {
+            for (long count : (long[]) result) {
+                rows += Math.max(count, 0);
+            }
+        }
+        finish(sql, values, rows, System.nanoTime() - start);
+        return result;
+    }
+
+    private Object call(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(statement, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String sql(Object[] args) {
+        if (preparedSql != null) {
+            return preparedSql;
+        }
+        return args != null && args.length > 0 && args[0] instanceof String ? (String) args[0] : "?";
+    }
+
+    // a result set that was never read to the end is done once its statement runs again
+    private void finishOpen() {
+        if (open != null) {
+            open.finish();
+            open = null;
+        }
+    }
+
+    // closes the last query's results if the caller left them open: on SQLite an unfinished query
+    // holds a read lock for as long as its statement sits in the cache
+    static void closeResults(Statement statement) {
+        if (Proxy.isProxyClass(statement.getClass())
+                && Proxy.getInvocationHandler(statement) instanceof TracingStatement) {
+            TracingStatement tracing = (TracingStatement) Proxy.getInvocationHandler(statement);
+            if (tracing.open != null) {
+                tracing.open.close();
+                tracing.open = null;
+            }
+        }
+    }
+
+    private static void finish(String sql, int params, long rows, long nanos) {
+        SqlStats.record(sql, rows, nanos);
+        SlowQueryLog.record(sql, params, rows, nanos);
+    }
+
+    // counts the rows read from a query and reports it once they have all been read or it is closed
+    private static final class TracedResults implements InvocationHandler {
+        private final ResultSet resultSet;
+        private final ResultSet proxy;
+        private final String sql;
+        private final int params;
+        private final long start;
+        // when the caller last read from the results, the end of the query's time
+        private long lastFetch;
+        private long rows = 0;
+        private boolean finished = false;
+
+        private TracedResults(ResultSet resultSet, String sql, int params, long start) {
+            this.resultSet = resultSet;
+            this.sql = sql;
+            this.params = params;
+            this.start = start;
+            this.lastFetch = System.nanoTime();
+            this.proxy = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(resultSet, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            String name = method.getName();
+            if (name.equals("next")) {
+                lastFetch = System.nanoTime();
+                if ((Boolean) result) {
+                    rows++;
+                } else {
+                    finish();
+                }
+            } else if (name.equals("close")) {
+                finish();
+            }
+            return result;
+        }
+
+        private void close() {
+            if (finished) {
+                return;
+            }
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                // the pool discards the connection if it is no longer usable
+            }
+            finish();
+        }
+
+        private void finish() {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            TracingStatement.finish(sql, params, rows, lastFetch - start);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package scheduler.metrics;
+
+/**
+ * What JMX shows for one latency histogram, in milliseconds.
+ */
+public interface LatencyHistogramMXBean {
+
+    long getCount();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP99Millis();
+
+    double getP999Millis();
+
+    double getMaxMillis();
+
+    void reset();
+}
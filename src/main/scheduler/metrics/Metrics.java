@@ -0,0 +1,71 @@
+package scheduler.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Process-wide registry of latency histograms. Each histogram is also published over JMX as
+ * scheduler:type=Latency,name=<name>. Look a histogram up once and keep the reference; the
+ * lookup is a map access, recording is not.
+ */
+public class Metrics {
+
+    // declared first so it exists when the constants below are created
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    // time spent in the pool waiting for and validating a connection
+    public static final LatencyHistogram DB_ACQUIRE = histogram("db.acquire");
+    // statement executions by kind, as seen by the JDBC driver
+    public static final LatencyHistogram DB_QUERY = histogram("db.query");
+    public static final LatencyHistogram DB_UPDATE = histogram("db.update");
+    public static final LatencyHistogram DB_BATCH = histogram("db.batch");
+    // one PBKDF2 derivation in Util.generateHash
+    public static final LatencyHistogram PBKDF2 = histogram("auth.pbkdf2");
+
+    private Metrics() {
+    }
+
+    public static LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram != null) {
+            return histogram;
+        }
+        LatencyHistogram created = new LatencyHistogram(name);
+        histogram = histograms.putIfAbsent(name, created);
+        if (histogram != null) {
+            return histogram;
+        }
+        register("type=Latency,name=" + ObjectName.quote(name), created);
+        return created;
+    }
+
+    // every histogram, ordered by name
+    public static List<LatencyHistogram> histograms() {
+        return new ArrayList<>(histograms.values());
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    // publishes an MXBean as scheduler:<properties>; failures only cost the JMX view
+    public static void register(String properties, Object mxBean) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("scheduler:" + properties);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(mxBean, objectName);
+            }
+        } catch (JMException e) {
+            System.out.println("Could not register " + properties + " with JMX: " + e.getMessage());
+        }
+    }
+}
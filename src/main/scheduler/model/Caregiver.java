@@ -1,12 +1,26 @@
 package scheduler.model;
 
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.UsernameFilter;
 import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
 import scheduler.util.Util;
 
 import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class Caregiver {
+    // a date uploaded concurrently by the same caregiver is skipped instead of failing the batch
+    private static final String ADD_AVAILABILITY_IF_ABSENT = ConnectionManager.getDialect().equals("sqlite")
+            ? "INSERT OR IGNORE INTO Availabilities VALUES (?, ?)"
+            : "INSERT INTO Availabilities VALUES (?, ?) ON CONFLICT DO NOTHING";
+
     private final String username;
     private final byte[] salt;
     private final byte[] hash;
@@ -38,17 +52,19 @@ public class Caregiver {
 
     public void saveToDB() throws SQLException {
         ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        cm.createConnection();
 
         String addCaregiver = "INSERT INTO Caregivers VALUES (? , ?, ?)";
         try {
-            PreparedStatement statement = con.prepareStatement(addCaregiver);
+            PreparedStatement statement = cm.prepareStatement(addCaregiver);
             statement.setString(1, this.username);
             statement.setBytes(2, this.salt);
             statement.setBytes(3, this.hash);
             statement.executeUpdate();
+            UsernameFilter.caregivers().add(this.username);
         } catch (SQLException e) {
-            throw new SQLException();
+            throw new SQLException("Could not save caregiver " + this.username,
+                    e.getSQLState(), e.getErrorCode(), e);
         } finally {
             cm.closeConnection();
         }
@@ -56,21 +72,75 @@ public class Caregiver {
 
     public void uploadAvailability(Date d) throws SQLException {
         ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        cm.createConnection();
 
         String addAvailability = "INSERT INTO Availabilities VALUES (? , ?)";
         try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
+            PreparedStatement statement = cm.prepareStatement(addAvailability);
             statement.setDate(1, d);
             statement.setString(2, this.username);
             statement.executeUpdate();
+            AvailabilityIndex.getInstance().add(d, this.username);
         } catch (SQLException e) {
-            throw new SQLException();
+            throw new SQLException("Could not upload availability for " + this.username,
+                    e.getSQLState(), e.getErrorCode(), e);
         } finally {
             cm.closeConnection();
         }
     }
 
+    // Adds every date from..to inclusive that falls on one of the given days, in one transaction.
+    // Dates already uploaded are skipped; returns how many dates were added
+    public int uploadAvailability(Date from, Date to, Set<DayOfWeek> days) throws SQLException {
+        String selectUploaded = "SELECT Time FROM Availabilities WHERE Username = ? AND Time >= ? AND Time <= ?";
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            // read before the transaction starts so it begins with a write, which SQLite can
+            // always upgrade to; dates an upload racing this one adds meanwhile are ignored on insert
+            Set<LocalDate> uploaded = new HashSet<>();
+            PreparedStatement select = lease.prepareStatement(selectUploaded);
+            select.setString(1, this.username);
+            select.setDate(2, from);
+            select.setDate(3, to);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    uploaded.add(resultSet.getDate("Time").toLocalDate());
+                }
+            }
+
+            List<Date> batch = new ArrayList<>();
+            PreparedStatement insert = lease.prepareStatement(ADD_AVAILABILITY_IF_ABSENT);
+            for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()); day = day.plusDays(1)) {
+                if (!days.contains(day.getDayOfWeek()) || uploaded.contains(day)) {
+                    continue;
+                }
+                Date d = Date.valueOf(day);
+                insert.setDate(1, d);
+                insert.setString(2, this.username);
+                insert.addBatch();
+                batch.add(d);
+            }
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            int[] counts = insert.executeBatch();
+            con.commit();
+            int added = 0;
+            for (int i = 0; i < counts.length; i++) {
+                // 0 when the racing upload got there first; it indexes that date itself
+                if (counts[i] != 0) {
+                    AvailabilityIndex.getInstance().add(batch.get(i), this.username);
+                    added++;
+                }
+            }
+            return added;
+        } catch (SQLException e) {
+            throw new SQLException("Could not upload availability for " + this.username,
+                    e.getSQLState(), e.getErrorCode(), e);
+        }
+    }
+
     public static class CaregiverBuilder {
         private final String username;
         private final byte[] salt;
@@ -100,31 +170,36 @@ public class Caregiver {
 
         public Caregiver get() throws SQLException {
             ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
+            cm.createConnection();
 
             String getCaregiver = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
             try {
-                PreparedStatement statement = con.prepareStatement(getCaregiver);
+                PreparedStatement statement = cm.prepareStatement(getCaregiver);
                 statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
+                byte[] salt;
+                byte[] hash;
+                // read and closed before hashing: an unfinished query keeps its read lock on the
+                // database, even after the connection has gone back to the pool
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
                         return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Caregiver(this);
                     }
+                    salt = resultSet.getBytes("Salt");
+                    // we need to call Util.trim() to get rid of the paddings,
+                    // try to remove the use of Util.trim() and you'll see :)
+                    hash = Util.trim(resultSet.getBytes("Hash"));
+                }
+                // check if the password matches
+                byte[] calculatedHash = Util.generateHash(password, salt);
+                if (!Arrays.equals(hash, calculatedHash)) {
+                    return null;
                 }
-                return null;
+                this.salt = salt;
+                this.hash = hash;
+                return new Caregiver(this);
             } catch (SQLException e) {
-                throw new SQLException();
+                throw new SQLException("Could not look up caregiver " + this.username,
+                        e.getSQLState(), e.getErrorCode(), e);
             } finally {
                 cm.closeConnection();
             }
@@ -1,5 +1,6 @@
 package scheduler.model;
 
+import scheduler.cache.UsernameFilter;
 import scheduler.db.ConnectionManager;
 import scheduler.util.Util;
 
@@ -38,17 +39,19 @@ public class Patient {
 
     public void saveToDB() throws SQLException {
         ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        cm.createConnection();
 
         String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
         try {
-            PreparedStatement statement = con.prepareStatement(addPatient);
+            PreparedStatement statement = cm.prepareStatement(addPatient);
             statement.setString(1, this.username);
             statement.setBytes(2, this.salt);
             statement.setBytes(3, this.hash);
             statement.executeUpdate();
+            UsernameFilter.patients().add(this.username);
         } catch (SQLException e) {
-            throw new SQLException();
+            throw new SQLException("Could not save patient " + this.username,
+                    e.getSQLState(), e.getErrorCode(), e);
         } finally {
             cm.closeConnection();
         }
@@ -83,31 +86,36 @@ public class Patient {
 
         public Patient get() throws SQLException {
             ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
+            cm.createConnection();
 
             String getPatient = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
             try {
-                PreparedStatement statement = con.prepareStatement(getPatient);
+                PreparedStatement statement = cm.prepareStatement(getPatient);
                 statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
+                byte[] salt;
+                byte[] hash;
+                // read and closed before hashing: an unfinished query keeps its read lock on the
+                // database, even after the connection has gone back to the pool
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
                         return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Patient(this);
                     }
+                    salt = resultSet.getBytes("Salt");
+                    // we need to call Util.trim() to get rid of the paddings,
+                    // try to remove the use of Util.trim() and you'll see :)
+                    hash = Util.trim(resultSet.getBytes("Hash"));
+                }
+                // check if the password matches
+                byte[] calculatedHash = Util.generateHash(password, salt);
+                if (!Arrays.equals(hash, calculatedHash)) {
+                    return null;
                 }
-                return null;
+                this.salt = salt;
+                this.hash = hash;
+                return new Patient(this);
             } catch (SQLException e) {
-                throw new SQLException();
+                throw new SQLException("Could not look up patient " + this.username,
+                        e.getSQLState(), e.getErrorCode(), e);
             } finally {
                 cm.closeConnection();
             }
@@ -0,0 +1,189 @@
+package scheduler.service;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.IdAllocator;
+import scheduler.db.PooledConnection;
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Moves appointments older than a cutoff out of Appointments into one table per month,
+ * Appointments_YYYY_MM, so the table every booking and lookup works on only holds recent rows.
+ * The archive tables are listed in Appointment_archives and cached here.
+ *
+ * Rows move in batches of ArchiveBatchSize, each its own short transaction, with a pause of
+ * ArchivePauseMillis between batches so bookings are not locked out while a large backlog is
+ * archived. Each batch picks its ids first, outside the transaction, and then copies and deletes
+ * exactly those ids; a row cancelled in between is simply neither copied nor deleted.
+ *
+ * The appointment id allocator seeds its sequence from the hot table only, so its Sequences row
+ * is written before the first rows are moved; otherwise archived ids could be handed out again.
+ */
+public class AppointmentArchive {
+
+    private static final String LOAD = "SELECT Month, Table_name FROM Appointment_archives";
+    private static final String REGISTER = "INSERT INTO Appointment_archives VALUES (?, ?)";
+    private static final String NEXT_BATCH =
+            "SELECT Appointment_id, Time FROM Appointments WHERE Time < ? ORDER BY Appointment_id LIMIT ?";
+
+    private final IdAllocator appointmentIds;
+    private final int batchSize;
+    private final long pauseMillis;
+    private final ConcurrentSkipListMap<YearMonth, String> tables = new ConcurrentSkipListMap<>();
+    private volatile boolean loaded = false;
+
+    public AppointmentArchive(IdAllocator appointmentIds) {
+        this(appointmentIds, Config.getInt("ArchiveBatchSize", 500), Config.getLong("ArchivePauseMillis", 50));
+    }
+
+    public AppointmentArchive(IdAllocator appointmentIds, int batchSize, long pauseMillis) {
+        this.appointmentIds = appointmentIds;
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    public synchronized void load() throws SQLException {
+        if (loaded) {
+            return;
+        }
+        try (PooledConnection lease = ConnectionManager.lease();
+             ResultSet resultSet = lease.prepareStatement(LOAD).executeQuery()) {
+            while (resultSet.next()) {
+                tables.put(YearMonth.parse(resultSet.getString("Month")), resultSet.getString("Table_name"));
+            }
+        }
+        loaded = true;
+    }
+
+    // archive tables holding any month from..to, oldest first
+    public List<String> tablesBetween(Date from, Date to) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        return new ArrayList<>(tables.subMap(YearMonth.from(from.toLocalDate()), true,
+                YearMonth.from(to.toLocalDate()), true).values());
+    }
+
+    // moves every appointment dated before the cutoff, returns how many were moved
+    public int archive(Date cutoff) throws SQLException {
+        if (!loaded) {
+            load();
+        }
+        appointmentIds.ensureSeeded();
+        int moved = 0;
+        while (true) {
+            Map<YearMonth, List<Integer>> batch = nextBatch(cutoff);
+            if (batch.isEmpty()) {
+                return moved;
+            }
+            for (YearMonth month : batch.keySet()) {
+                ensureTable(month);
+            }
+            moved += move(batch);
+            try {
+                Thread.sleep(pauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return moved;
+            }
+        }
+    }
+
+    // the oldest ids dated before the cutoff, grouped by the month they belong to
+    private Map<YearMonth, List<Integer>> nextBatch(Date cutoff) throws SQLException {
+        Map<YearMonth, List<Integer>> batch = new TreeMap<>();
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            PreparedStatement statement = lease.prepareStatement(NEXT_BATCH);
+            statement.setDate(1, cutoff);
+            statement.setInt(2, batchSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    LocalDate time = resultSet.getDate("Time").toLocalDate();
+                    batch.computeIfAbsent(YearMonth.from(time), key -> new ArrayList<>())
+                            .add(resultSet.getInt("Appointment_id"));
+                }
+            }
+        }
+        return batch;
+    }
+
+    private int move(Map<YearMonth, List<Integer>> batch) throws SQLException {
+        int moved = 0;
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            // copying first keeps the transaction a writer from its first statement on SQLite
+            for (Map.Entry<YearMonth, List<Integer>> month : batch.entrySet()) {
+                List<Integer> ids = month.getValue();
+                try (PreparedStatement copy = con.prepareStatement("INSERT INTO " + tables.get(month.getKey())
+                        + " SELECT * FROM Appointments WHERE Appointment_id IN (" + placeholders(ids.size()) + ")");
+                     PreparedStatement delete = con.prepareStatement(
+                             "DELETE FROM Appointments WHERE Appointment_id IN (" + placeholders(ids.size()) + ")")) {
+                    bind(copy, ids);
+                    int copied = copy.executeUpdate();
+                    bind(delete, ids);
+                    if (delete.executeUpdate() != copied) {
+                        throw new SQLException("Appointments changed while archiving " + month.getKey());
+                    }
+                    moved += copied;
+                }
+            }
+            con.commit();
+        }
+        return moved;
+    }
+
+    private void ensureTable(YearMonth month) throws SQLException {
+        if (tables.containsKey(month)) {
+            return;
+        }
+        String table = String.format("Appointments_%04d_%02d", month.getYear(), month.getMonthValue());
+        try (PooledConnection lease = ConnectionManager.lease();
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS " + table + " ("
+                    + "Appointment_id INT PRIMARY KEY, Time date, Caregiver_name VARCHAR(255), "
+                    + "Patient_name VARCHAR(255), Vaccine VARCHAR(255))");
+            // the same lookups show_appointments uses on the hot table
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_by_patient ON " + table
+                    + " (Patient_name, Appointment_id, Time, Vaccine, Caregiver_name)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS " + table + "_by_caregiver ON " + table
+                    + " (Caregiver_name, Appointment_id, Time, Vaccine, Patient_name)");
+            PreparedStatement register = lease.prepareStatement(REGISTER);
+            register.setString(1, month.toString());
+            register.setString(2, table);
+            try {
+                register.executeUpdate();
+            } catch (SQLException e) {
+                // another process registered it first; the table is the same either way
+            }
+        }
+        tables.put(month, table);
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement statement, List<Integer> ids) throws SQLException {
+        for (int i = 0; i < ids.size(); i++) {
+            statement.setInt(i + 1, ids.get(i));
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package scheduler.service;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cancels appointments as one set-based transaction: a single DELETE ... RETURNING removes them
+ * and reports what was removed, and one batch puts each caregiver's availability row back. Once
+ * the transaction commits the slots go back into the AvailabilityIndex, the doses back into the
+ * VaccineInventory (which writes them to Vaccines with its next flush), and the assignment
+ * strategy is told about each cancellation.
+ */
+public class CancelEngine {
+
+    private static final String RETURNING = " RETURNING Appointment_id, Time, Caregiver_name, Patient_name, Vaccine";
+    // the delete is the first statement, so on SQLite the transaction is a writer from the start
+    private static final String CANCEL_PATIENT =
+            "DELETE FROM Appointments WHERE Appointment_id = ? AND Patient_name = ?" + RETURNING;
+    private static final String CANCEL_CAREGIVER =
+            "DELETE FROM Appointments WHERE Appointment_id = ? AND Caregiver_name = ?" + RETURNING;
+    private static final String CANCEL_DAY =
+            "DELETE FROM Appointments WHERE Caregiver_name = ? AND Time = ?" + RETURNING;
+    // the caregiver may have uploaded the date again since the booking
+    private static final String RESTORE_SLOT = ConnectionManager.getDialect().equals("sqlite")
+            ? "INSERT OR IGNORE INTO Availabilities VALUES (?, ?)"
+            : "INSERT INTO Availabilities VALUES (?, ?) ON CONFLICT DO NOTHING";
+
+    private final AvailabilityIndex availability;
+    private final VaccineInventory inventory;
+    private final CaregiverAssignment assignment;
+
+    public CancelEngine(AvailabilityIndex availability, VaccineInventory inventory, CaregiverAssignment assignment) {
+        this.availability = availability;
+        this.inventory = inventory;
+        this.assignment = assignment;
+    }
+
+    // cancels the appointment if it belongs to the patient; null if there is no such appointment
+    public Cancellation cancelForPatient(int appointmentId, String patientName) throws SQLException {
+        return single(CANCEL_PATIENT, appointmentId, patientName);
+    }
+
+    // cancels the appointment if it is with the caregiver; null if there is no such appointment
+    public Cancellation cancelForCaregiver(int appointmentId, String caregiverName) throws SQLException {
+        return single(CANCEL_CAREGIVER, appointmentId, caregiverName);
+    }
+
+    // cancels every appointment the caregiver has on the date
+    public List<Cancellation> cancelAll(String caregiverName, Date date) throws SQLException {
+        return cancel(CANCEL_DAY, statement -> {
+            statement.setString(1, caregiverName);
+            statement.setDate(2, date);
+        });
+    }
+
+    private Cancellation single(String sql, int appointmentId, String username) throws SQLException {
+        List<Cancellation> cancelled = cancel(sql, statement -> {
+            statement.setInt(1, appointmentId);
+            statement.setString(2, username);
+        });
+        return cancelled.isEmpty() ? null : cancelled.get(0);
+    }
+
+    private interface Binder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private List<Cancellation> cancel(String sql, Binder binder) throws SQLException {
+        List<Cancellation> cancelled = new ArrayList<>();
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement delete = lease.prepareStatement(sql);
+            binder.bind(delete);
+            try (ResultSet resultSet = delete.executeQuery()) {
+                while (resultSet.next()) {
+                    cancelled.add(new Cancellation(resultSet.getInt("Appointment_id"), resultSet.getDate("Time"),
+                            resultSet.getString("Caregiver_name"), resultSet.getString("Patient_name"),
+                            resultSet.getString("Vaccine")));
+                }
+            }
+            if (cancelled.isEmpty()) {
+                con.rollback();
+                return cancelled;
+            }
+            PreparedStatement restore = lease.prepareStatement(RESTORE_SLOT);
+            for (Cancellation cancellation : cancelled) {
+                restore.setDate(1, cancellation.getDate());
+                restore.setString(2, cancellation.getCaregiverName());
+                restore.addBatch();
+            }
+            int[] counts = restore.executeBatch();
+            con.commit();
+            for (int i = 0; i < cancelled.size(); i++) {
+                cancelled.get(i).setSlotRestored(counts[i] != 0);
+            }
+        }
+        afterCommit(cancelled);
+        return cancelled;
+    }
+
+    private void afterCommit(List<Cancellation> cancelled) throws SQLException {
+        Map<String, Integer> doses = new HashMap<>();
+        for (Cancellation cancellation : cancelled) {
+            // add() is idempotent for a caregiver already in the index
+            availability.add(cancellation.getDate(), cancellation.getCaregiverName());
+            assignment.cancelled(cancellation.getDate(), cancellation.getCaregiverName());
+            doses.merge(cancellation.getVaccineName(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : doses.entrySet()) {
+            inventory.add(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package scheduler.service;
+
+import java.sql.Date;
+
+// one appointment removed by a cancel; slotRestored is false when the caregiver's availability
+// row for the date already existed again
+public class Cancellation {
+
+    private final int appointmentId;
+    private final Date date;
+    private final String caregiverName;
+    private final String patientName;
+    private final String vaccineName;
+    private boolean slotRestored;
+
+    Cancellation(int appointmentId, Date date, String caregiverName, String patientName, String vaccineName) {
+        this.appointmentId = appointmentId;
+        this.date = date;
+        this.caregiverName = caregiverName;
+        this.patientName = patientName;
+        this.vaccineName = vaccineName;
+    }
+
+    void setSlotRestored(boolean slotRestored) {
+        this.slotRestored = slotRestored;
+    }
+
+    public int getAppointmentId() {
+        return appointmentId;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    public boolean isSlotRestored() {
+        return slotRestored;
+    }
+}
@@ -0,0 +1,38 @@
+package scheduler.service;
+
+import scheduler.db.PooledConnection;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.NavigableSet;
+
+/**
+ * Decides which free caregiver a reservation goes to. Implementations return the free caregivers
+ * in the order reserve should try to claim them, and are told about every booking that commits
+ * and every appointment that is cancelled.
+ */
+public interface CaregiverAssignment {
+
+    // loads whatever the strategy keeps in memory, through a connection the caller already holds:
+    // reserve calls this with its own lease before every booking, so it must be cheap once loaded
+    default void load(PooledConnection lease) throws SQLException {
+    }
+
+    Iterable<String> candidates(Date date, NavigableSet<String> free) throws SQLException;
+
+    void booked(Date date, String caregiverName);
+
+    void cancelled(Date date, String caregiverName);
+
+    // first_fit, round_robin or least_loaded
+    static CaregiverAssignment forName(String name) {
+        if (name.equals("first_fit")) {
+            return new FirstFitAssignment();
+        } else if (name.equals("round_robin")) {
+            return new RoundRobinAssignment();
+        } else if (name.equals("least_loaded")) {
+            return new LeastLoadedAssignment();
+        }
+        throw new IllegalArgumentException("Unknown assignment strategy: " + name);
+    }
+}
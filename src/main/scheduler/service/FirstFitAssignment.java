@@ -0,0 +1,21 @@
+package scheduler.service;
+
+import java.sql.Date;
+import java.util.NavigableSet;
+
+// the alphabetically first free caregiver, which is how reserve has always picked
+public class FirstFitAssignment implements CaregiverAssignment {
+
+    @Override
+    public Iterable<String> candidates(Date date, NavigableSet<String> free) {
+        return free;
+    }
+
+    @Override
+    public void booked(Date date, String caregiverName) {
+    }
+
+    @Override
+    public void cancelled(Date date, String caregiverName) {
+    }
+}
@@ -0,0 +1,107 @@
+package scheduler.service;
+
+import scheduler.db.PooledConnection;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prefers the free caregiver with the fewest appointments booked so far, ties broken by username.
+ * A caregiver can only take one appointment per date, so load is counted across all dates. The
+ * counts are loaded from Appointments and the archive tables listed in Appointment_archives once,
+ * at startup or by the first booking, and then kept in memory, where archiving does not change
+ * them either. Loading uses the caller's connection: a booking already holds one, and taking a second
+ * from the pool while every booking thread does the same can exhaust it.
+ */
+public class LeastLoadedAssignment implements CaregiverAssignment {
+
+    private static final String ARCHIVES = "SELECT Table_name FROM Appointment_archives";
+    private static final String LOAD = "SELECT Caregiver_name, COUNT(*) AS booked FROM %s GROUP BY Caregiver_name";
+
+    private static final Comparator<Map.Entry<String, Integer>> BY_LOAD =
+            Map.Entry.<String, Integer>comparingByValue().thenComparing(Map.Entry.comparingByKey());
+
+    private final ConcurrentHashMap<String, AtomicInteger> load = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    @Override
+    public void load(PooledConnection lease) throws SQLException {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            List<String> tables = new ArrayList<>();
+            tables.add("Appointments");
+            try (ResultSet resultSet = lease.prepareStatement(ARCHIVES).executeQuery()) {
+                while (resultSet.next()) {
+                    tables.add(resultSet.getString("Table_name"));
+                }
+            }
+            // summed apart and applied at the end, so a load that fails halfway can simply be retried
+            Map<String, Integer> booked = new HashMap<>();
+            for (String table : tables) {
+                try (ResultSet resultSet = lease.prepareStatement(String.format(LOAD, table)).executeQuery()) {
+                    while (resultSet.next()) {
+                        booked.merge(resultSet.getString("Caregiver_name"), resultSet.getInt("booked"), Integer::sum);
+                    }
+                }
+            }
+            for (Map.Entry<String, Integer> entry : booked.entrySet()) {
+                counter(entry.getKey()).addAndGet(entry.getValue());
+            }
+            loaded = true;
+        }
+    }
+
+    // a date rarely has more than a few dozen free caregivers, so ranking them per call is cheap
+    // and never goes stale the way a per-date heap would when a caregiver's load changes
+    @Override
+    public Iterable<String> candidates(Date date, NavigableSet<String> free) throws SQLException {
+        if (!loaded) {
+            throw new SQLException("Caregiver load counts have not been loaded");
+        }
+        // snapshot the counts so concurrent bookings cannot reorder the list while it is sorted
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>();
+        for (String username : free) {
+            ranked.add(new AbstractMap.SimpleImmutableEntry<>(username, loadOf(username)));
+        }
+        ranked.sort(BY_LOAD);
+        List<String> usernames = new ArrayList<>(ranked.size());
+        for (Map.Entry<String, Integer> entry : ranked) {
+            usernames.add(entry.getKey());
+        }
+        return usernames;
+    }
+
+    @Override
+    public void booked(Date date, String caregiverName) {
+        counter(caregiverName).incrementAndGet();
+    }
+
+    @Override
+    public void cancelled(Date date, String caregiverName) {
+        counter(caregiverName).decrementAndGet();
+    }
+
+    private int loadOf(String caregiverName) {
+        AtomicInteger count = load.get(caregiverName);
+        return count == null ? 0 : count.get();
+    }
+
+    private AtomicInteger counter(String caregiverName) {
+        return load.computeIfAbsent(caregiverName, key -> new AtomicInteger());
+    }
+}
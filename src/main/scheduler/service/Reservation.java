@@ -0,0 +1,67 @@
+package scheduler.service;
+
+import java.sql.Date;
+
+// outcome of a reserve attempt; appointment fields are only set when the status is BOOKED
+public class Reservation {
+
+    public enum Status {
+        BOOKED,
+        NO_DOSES,
+        NO_CAREGIVER
+    }
+
+    private final Status status;
+    private final int appointmentId;
+    private final Date date;
+    private final String caregiverName;
+    private final String patientName;
+    private final String vaccineName;
+
+    private Reservation(Status status, int appointmentId, Date date, String caregiverName,
+                        String patientName, String vaccineName) {
+        this.status = status;
+        this.appointmentId = appointmentId;
+        this.date = date;
+        this.caregiverName = caregiverName;
+        this.patientName = patientName;
+        this.vaccineName = vaccineName;
+    }
+
+    static Reservation booked(int appointmentId, Date date, String caregiverName, String patientName,
+                              String vaccineName) {
+        return new Reservation(Status.BOOKED, appointmentId, date, caregiverName, patientName, vaccineName);
+    }
+
+    static Reservation failed(Status status, Date date, String patientName, String vaccineName) {
+        return new Reservation(status, 0, date, null, patientName, vaccineName);
+    }
+
+    public boolean isBooked() {
+        return status == Status.BOOKED;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public int getAppointmentId() {
+        return appointmentId;
+    }
+
+    public Date getDate() {
+        return date;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+}
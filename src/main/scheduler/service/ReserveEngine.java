@@ -0,0 +1,197 @@
+package scheduler.service;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.IdAllocator;
+import scheduler.db.PooledConnection;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Books an appointment: take a dose from the VaccineInventory, then in a single transaction claim
+ * a caregiver's slot and insert the appointment under an id from the IdAllocator. The
+ * CaregiverAssignment strategy decides which free caregiver is tried first. A slot is claimed in
+ * the AvailabilityIndex and confirmed by deleting its availability row, so two patients can never
+ * end up with the same caregiver. The dose goes back to the inventory if the booking does not
+ * commit. Transactions that lose a lock race are retried a few times with a short randomized
+ * backoff.
+ */
+public class ReserveEngine {
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BACKOFF_MILLIS = 10;
+
+    // the claim is the first statement of the transaction, so on SQLite the transaction is a
+    // writer from the start and reservations serialize instead of failing lock upgrades
+    private static final String CLAIM_SLOT = "DELETE FROM Availabilities WHERE Time = ? AND Username = ?";
+    private static final String INSERT_APPOINTMENT = "INSERT INTO Appointments VALUES (?, ?, ?, ?, ?)";
+
+    private final IdAllocator appointmentIds;
+    private final AvailabilityIndex availability;
+    private final VaccineInventory inventory;
+    private final CaregiverAssignment assignment;
+    private final AtomicLong booked = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lostClaims = new AtomicLong();
+
+    public ReserveEngine(IdAllocator appointmentIds, AvailabilityIndex availability, VaccineInventory inventory,
+                         CaregiverAssignment assignment) {
+        this.appointmentIds = appointmentIds;
+        this.availability = availability;
+        this.inventory = inventory;
+        this.assignment = assignment;
+    }
+
+    public Reservation reserve(String patientName, Date date, String vaccineName) throws SQLException {
+        if (!inventory.take(vaccineName, 1)) {
+            rejected.incrementAndGet();
+            return Reservation.failed(Reservation.Status.NO_DOSES, date, patientName, vaccineName);
+        }
+        boolean doseUsed = false;
+        try {
+            Reservation reservation = book(patientName, date, vaccineName);
+            doseUsed = reservation.isBooked();
+            return reservation;
+        } finally {
+            if (!doseUsed) {
+                inventory.add(vaccineName, 1);
+            }
+        }
+    }
+
+    private Reservation book(String patientName, Date date, String vaccineName) throws SQLException {
+        // taken before the transaction starts: a block refill needs the write lock on another
+        // connection, and an id left unused by a failed booking is just a gap
+        int appointmentId = appointmentIds.nextInt();
+        SQLException lastError = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try (PooledConnection lease = ConnectionManager.lease()) {
+                Connection con = lease.getConnection();
+                // a no-op once warmUp has run; otherwise the read happens here, on this lease and
+                // before the transaction starts
+                assignment.load(lease);
+                con.setAutoCommit(false);
+                String caregiverName = null;
+                boolean committed = false;
+                try {
+                    caregiverName = claimCaregiver(lease, date);
+                    if (caregiverName == null) {
+                        con.rollback();
+                        rejected.incrementAndGet();
+                        return Reservation.failed(Reservation.Status.NO_CAREGIVER, date, patientName, vaccineName);
+                    }
+                    insertAppointment(lease, appointmentId, date, caregiverName, patientName, vaccineName);
+                    con.commit();
+                    committed = true;
+                    booked.incrementAndGet();
+                    assignment.booked(date, caregiverName);
+                    return Reservation.booked(appointmentId, date, caregiverName, patientName, vaccineName);
+                } catch (SQLException e) {
+                    rollbackQuietly(con);
+                    if (!isRetryable(e)) {
+                        throw e;
+                    }
+                    lastError = e;
+                } finally {
+                    // the slot is still free in the database if we did not commit
+                    if (caregiverName != null && !committed) {
+                        availability.release(date, caregiverName);
+                    }
+                }
+            }
+            retries.incrementAndGet();
+            backoff(attempt);
+        }
+        throw lastError;
+    }
+
+    // tries the free caregivers in the order the assignment strategy ranks them; each one is
+    // claimed in the availability index first, so concurrent bookings on the same date go after
+    // different rows, and the claim is confirmed by deleting the row
+    private String claimCaregiver(PooledConnection lease, Date date) throws SQLException {
+        PreparedStatement claim = lease.prepareStatement(CLAIM_SLOT);
+        for (String username : assignment.candidates(date, availability.caregivers(date))) {
+            if (!availability.claim(date, username)) {
+                lostClaims.incrementAndGet();
+                continue;
+            }
+            claim.setDate(1, date);
+            claim.setString(2, username);
+            int deleted;
+            try {
+                deleted = claim.executeUpdate();
+            } catch (SQLException e) {
+                // the row was not deleted, so the slot is still free; the caller's finally only
+                // knows about a claim that succeeded
+                availability.release(date, username);
+                throw e;
+            }
+            if (deleted == 1) {
+                return username;
+            }
+            // the row is gone from the database, so it stays out of the index
+            lostClaims.incrementAndGet();
+        }
+        return null;
+    }
+
+    private void insertAppointment(PooledConnection lease, int appointmentId, Date date, String caregiverName,
+                                   String patientName, String vaccineName) throws SQLException {
+        PreparedStatement insert = lease.prepareStatement(INSERT_APPOINTMENT);
+        insert.setInt(1, appointmentId);
+        insert.setDate(2, date);
+        insert.setString(3, caregiverName);
+        insert.setString(4, patientName);
+        insert.setString(5, vaccineName);
+        insert.executeUpdate();
+    }
+
+    public long getBookedCount() {
+        return booked.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getLostClaimCount() {
+        return lostClaims.get();
+    }
+
+    // SQLite reports lock contention as SQLITE_BUSY (5) or SQLITE_LOCKED (6); Postgres uses the
+    // serialization failure and deadlock states. Unique violations are deliberately not retried:
+    // allocator ids cannot collide, so one means a real duplicate
+    static boolean isRetryable(SQLException e) {
+        int code = e.getErrorCode();
+        String state = e.getSQLState();
+        return code == 5 || code == 6
+                || "40001".equals(state) || "40P01".equals(state);
+    }
+
+    private static void rollbackQuietly(Connection con) {
+        try {
+            con.rollback();
+        } catch (SQLException e) {
+            // the pool resets or discards the connection when the lease is closed
+        }
+    }
+
+    private static void backoff(int attempt) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, BACKOFF_MILLIS * attempt + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
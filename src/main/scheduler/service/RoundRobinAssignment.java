@@ -0,0 +1,34 @@
+package scheduler.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+// starts after the caregiver that got the previous booking on the same date and wraps around
+public class RoundRobinAssignment implements CaregiverAssignment {
+
+    private final ConcurrentHashMap<LocalDate, String> lastBooked = new ConcurrentHashMap<>();
+
+    @Override
+    public Iterable<String> candidates(Date date, NavigableSet<String> free) {
+        String last = lastBooked.get(date.toLocalDate());
+        if (last == null) {
+            return free;
+        }
+        List<String> ordered = new ArrayList<>(free.tailSet(last, false));
+        ordered.addAll(free.headSet(last, true));
+        return ordered;
+    }
+
+    @Override
+    public void booked(Date date, String caregiverName) {
+        lastBooked.put(date.toLocalDate(), caregiverName);
+    }
+
+    @Override
+    public void cancelled(Date date, String caregiverName) {
+    }
+}
@@ -0,0 +1,265 @@
+package scheduler.service;
+
+import scheduler.cache.UsernameFilter;
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.util.Config;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Bulk-creates patients and caregivers from a CSV file with lines of the form
+ * role,username,password where role is patient or caregiver. The file is streamed in chunks of
+ * ImportChunkSize rows; each chunk has its passwords hashed in parallel on a fork-join pool and
+ * is inserted with JDBC batches in one transaction. Bad rows are reported and skipped instead of
+ * failing the import.
+ */
+public class UserImporter {
+
+    private static final String[] TABLES = {"Patients", "Caregivers"};
+    private static final UsernameFilter[] FILTERS = {UsernameFilter.patients(), UsernameFilter.caregivers()};
+
+    private static final class Row {
+        private final int line;
+        private final String username;
+        private final String password;
+        private final int table;
+        private byte[] salt;
+        private byte[] hash;
+        private String error;
+
+        private Row(int line, String username, String password, int table) {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+            this.table = table;
+        }
+    }
+
+    public static final class Result {
+        private final List<String> imported = new ArrayList<>();
+        private final List<String> failures = new ArrayList<>();
+
+        public List<String> getImported() {
+            return Collections.unmodifiableList(imported);
+        }
+
+        public List<String> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+    }
+
+    private final int chunkSize;
+    private final ForkJoinPool hashers;
+
+    public UserImporter() {
+        this(Config.getInt("ImportChunkSize", 500), ForkJoinPool.commonPool());
+    }
+
+    public UserImporter(int chunkSize, ForkJoinPool hashers) {
+        this.chunkSize = chunkSize;
+        this.hashers = hashers;
+    }
+
+    public Result importFile(Path csv) throws IOException, SQLException {
+        Result result = new Result();
+        // usernames seen earlier in this file, per table
+        List<Set<String>> seen = List.of(new HashSet<>(), new HashSet<>());
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || (lineNumber == 1 && line.toLowerCase().startsWith("role,"))) {
+                    continue;
+                }
+                Row row = parse(lineNumber, line);
+                if (row.error == null && !seen.get(row.table).add(row.username)) {
+                    row.error = "duplicate username in file";
+                }
+                if (row.error != null) {
+                    result.failures.add(describe(row));
+                    continue;
+                }
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    importChunk(chunk, result);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, result);
+            }
+        }
+        return result;
+    }
+
+    private static Row parse(int line, String text) {
+        String[] fields = text.split(",", -1);
+        if (fields.length != 3) {
+            Row row = new Row(line, text, null, 0);
+            row.error = "expected role,username,password";
+            return row;
+        }
+        String role = fields[0].trim().toLowerCase();
+        String username = fields[1].trim();
+        String password = fields[2].trim();
+        int table = role.equals("patient") ? 0 : role.equals("caregiver") ? 1 : -1;
+        Row row = new Row(line, username, password, Math.max(table, 0));
+        if (table < 0) {
+            row.error = "unknown role " + fields[0].trim();
+        } else if (username.isEmpty()) {
+            row.error = "missing username";
+        } else if (!Util.validPassword(password)) {
+            row.error = "password is not strong enough";
+        }
+        return row;
+    }
+
+    private void importChunk(List<Row> chunk, Result result) throws SQLException {
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            markExisting(lease, chunk);
+            List<Row> fresh = new ArrayList<>(chunk.size());
+            for (Row row : chunk) {
+                if (row.error == null) {
+                    fresh.add(row);
+                } else {
+                    result.failures.add(describe(row));
+                }
+            }
+            hashAll(fresh);
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            try {
+                insertBatches(lease, fresh);
+                con.commit();
+                for (Row row : fresh) {
+                    FILTERS[row.table].add(row.username);
+                    result.imported.add(row.username);
+                }
+            } catch (BatchUpdateException e) {
+                // someone inserted one of these names since we checked; find it row by row
+                con.rollback();
+                con.setAutoCommit(true);
+                insertOneByOne(lease, fresh, result);
+            }
+        }
+    }
+
+    private void hashAll(List<Row> rows) throws SQLException {
+        try {
+            hashers.submit(() -> rows.parallelStream().forEach(row -> {
+                row.salt = Util.generateSalt();
+                row.hash = Util.generateHash(row.password, row.salt);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while hashing passwords", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // one IN query per table for the whole chunk instead of a lookup per row
+    private static void markExisting(PooledConnection lease, List<Row> chunk) throws SQLException {
+        for (int table = 0; table < TABLES.length; table++) {
+            List<Row> rows = new ArrayList<>();
+            for (Row row : chunk) {
+                if (row.table == table) {
+                    rows.add(row);
+                }
+            }
+            if (rows.isEmpty()) {
+                continue;
+            }
+            StringBuilder sql = new StringBuilder("SELECT Username FROM ").append(TABLES[table])
+                    .append(" WHERE Username IN (");
+            for (int i = 0; i < rows.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(")");
+            Set<String> existing = new HashSet<>();
+            try (PreparedStatement statement = lease.getConnection().prepareStatement(sql.toString())) {
+                for (int i = 0; i < rows.size(); i++) {
+                    statement.setString(i + 1, rows.get(i).username);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        existing.add(resultSet.getString("Username"));
+                    }
+                }
+            }
+            for (Row row : rows) {
+                if (existing.contains(row.username)) {
+                    row.error = "username taken";
+                }
+            }
+        }
+    }
+
+    private static void insertBatches(PooledConnection lease, List<Row> rows) throws SQLException {
+        for (int table = 0; table < TABLES.length; table++) {
+            PreparedStatement statement = null;
+            for (Row row : rows) {
+                if (row.table != table) {
+                    continue;
+                }
+                if (statement == null) {
+                    statement = lease.prepareStatement(insertSql(table));
+                }
+                bind(statement, row);
+                statement.addBatch();
+            }
+            if (statement != null) {
+                statement.executeBatch();
+            }
+        }
+    }
+
+    private static void insertOneByOne(PooledConnection lease, List<Row> rows, Result result) {
+        for (Row row : rows) {
+            try {
+                PreparedStatement statement = lease.prepareStatement(insertSql(row.table));
+                bind(statement, row);
+                statement.executeUpdate();
+                FILTERS[row.table].add(row.username);
+                result.imported.add(row.username);
+            } catch (SQLException e) {
+                row.error = "insert failed: " + e.getMessage();
+                result.failures.add(describe(row));
+            }
+        }
+    }
+
+    private static String insertSql(int table) {
+        return "INSERT INTO " + TABLES[table] + " VALUES (?, ?, ?)";
+    }
+
+    private static void bind(PreparedStatement statement, Row row) throws SQLException {
+        statement.setString(1, row.username);
+        statement.setBytes(2, row.salt);
+        statement.setBytes(3, row.hash);
+    }
+
+    private static String describe(Row row) {
+        return "line " + row.line + " (" + row.username + "): " + row.error;
+    }
+}
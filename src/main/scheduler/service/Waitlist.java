@@ -0,0 +1,318 @@
+package scheduler.service;
+
+import scheduler.db.ConnectionManager;
+import scheduler.db.PooledConnection;
+import scheduler.util.Config;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Patients whose reservation failed for lack of a caregiver or doses, queued per date and vaccine
+ * in the order they asked. Nothing polls: uploading availability, adding doses and cancelling
+ * signal the dates or vaccine that gained supply, and a single matcher thread then makes one pass
+ * over just the affected queues, booking through the ReserveEngine in FIFO order. A queue is
+ * left as soon as one booking fails, and at most WaitlistBatchSize patients are booked from a
+ * queue per pass before the other queues get their turn. Signals that arrive during a pass are
+ * coalesced into the next one.
+ *
+ * One upcoming appointment per vaccine is all a waiting patient is after: once they hold one,
+ * booked by hand or by the matcher, they leave every queue for that vaccine, a patient who already
+ * holds one is not queued, and the matcher skips anyone it finds holding one. A patient also
+ * leaves when they ask to. Queues for dates that have passed are dropped. At most
+ * WaitlistMaxQueues date and vaccine pairs are open at once, each holding up to WaitlistMaxLength
+ * patients.
+ *
+ * The waitlist lives in memory only and is lost when the process stops; a patient finds a booking
+ * made for them with show_appointments.
+ */
+public class Waitlist {
+
+    private static final String HOLDS_APPOINTMENT =
+            "SELECT 1 FROM Appointments WHERE Patient_name = ? AND Vaccine = ? AND Time >= ? LIMIT 1";
+
+    private static final class Key {
+        private final Date date;
+        private final String vaccineName;
+
+        private Key(Date date, String vaccineName) {
+            this.date = date;
+            this.vaccineName = vaccineName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return date.equals(other.date) && vaccineName.equals(other.vaccineName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(date, vaccineName);
+        }
+    }
+
+    private final ReserveEngine reserveEngine;
+    private final int batchSize;
+    private final int maxLength;
+    private final int maxQueues;
+    // number of date and vaccine queues in queues; guarded by this
+    private int queueCount = 0;
+    // date -> vaccine -> waiting patients in arrival order; guarded by this
+    private final TreeMap<Date, Map<String, LinkedHashSet<String>>> queues = new TreeMap<>();
+    // queues that gained supply since the last pass; guarded by this
+    private final Set<Key> pending = new LinkedHashSet<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicLong matched = new AtomicLong();
+    private final ExecutorService matcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "waitlist-matcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Waitlist(ReserveEngine reserveEngine) {
+        this(reserveEngine, Config.getInt("WaitlistBatchSize", 50), Config.getInt("WaitlistMaxLength", 1000),
+                Config.getInt("WaitlistMaxQueues", 1000));
+    }
+
+    public Waitlist(ReserveEngine reserveEngine, int batchSize, int maxLength, int maxQueues) {
+        this.reserveEngine = reserveEngine;
+        this.batchSize = batchSize;
+        this.maxLength = maxLength;
+        this.maxQueues = maxQueues;
+    }
+
+    // queues a patient for a date that has not passed, returns their position (1 is next) or 0 when
+    // the queue is full or no more queues may be opened
+    public synchronized int join(String patientName, Date date, String vaccineName) {
+        dropPast();
+        Map<String, LinkedHashSet<String>> day = queues.get(date);
+        LinkedHashSet<String> queue = day == null ? null : day.get(vaccineName);
+        if (queue == null) {
+            if (queueCount >= maxQueues) {
+                return 0;
+            }
+            queue = new LinkedHashSet<>();
+            queues.computeIfAbsent(date, key -> new HashMap<>()).put(vaccineName, queue);
+            queueCount++;
+        } else if (!queue.contains(patientName) && queue.size() >= maxLength) {
+            return 0;
+        }
+        queue.add(patientName);
+        int position = 1;
+        for (String waiting : queue) {
+            if (waiting.equals(patientName)) {
+                return position;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    // takes the patient off the queue for one date and vaccine, e.g. once they booked it themselves;
+    // returns whether they were waiting
+    public synchronized boolean leave(String patientName, Date date, String vaccineName) {
+        return remove(new Key(date, vaccineName), patientName);
+    }
+
+    // takes the patient off every queue they are in, returns how many that was
+    public synchronized int leaveAll(String patientName) {
+        return leaveWhere(patientName, null);
+    }
+
+    // takes the patient off every queue for the vaccine, e.g. once they booked it on any date;
+    // returns how many that was
+    public synchronized int leaveVaccine(String patientName, String vaccineName) {
+        return leaveWhere(patientName, vaccineName);
+    }
+
+    // whether the patient has an appointment for the vaccine today or later, and so has nothing
+    // left to wait for
+    public boolean holdsAppointment(String patientName, String vaccineName) throws SQLException {
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            PreparedStatement statement = lease.prepareStatement(HOLDS_APPOINTMENT);
+            statement.setString(1, patientName);
+            statement.setString(2, vaccineName);
+            statement.setDate(3, Date.valueOf(LocalDate.now()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    public void availabilityAdded(Date date) {
+        availabilityAdded(date, date);
+    }
+
+    // caregivers became free on some dates from..to
+    public void availabilityAdded(Date from, Date to) {
+        synchronized (this) {
+            for (Map.Entry<Date, Map<String, LinkedHashSet<String>>> day
+                    : queues.subMap(from, true, to, true).entrySet()) {
+                for (String vaccineName : day.getValue().keySet()) {
+                    pending.add(new Key(day.getKey(), vaccineName));
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+        schedule();
+    }
+
+    public void dosesAdded(String vaccineName) {
+        synchronized (this) {
+            for (Map.Entry<Date, Map<String, LinkedHashSet<String>>> day : queues.entrySet()) {
+                if (day.getValue().containsKey(vaccineName)) {
+                    pending.add(new Key(day.getKey(), vaccineName));
+                }
+            }
+            if (pending.isEmpty()) {
+                return;
+            }
+        }
+        schedule();
+    }
+
+    public synchronized int getWaitingCount() {
+        int waiting = 0;
+        for (Map<String, LinkedHashSet<String>> day : queues.values()) {
+            for (LinkedHashSet<String> queue : day.values()) {
+                waiting += queue.size();
+            }
+        }
+        return waiting;
+    }
+
+    public long getMatchedCount() {
+        return matched.get();
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            matcher.execute(this::matchPending);
+        }
+    }
+
+    private void matchPending() {
+        // cleared first, so a signal arriving during this pass schedules another one
+        scheduled.set(false);
+        List<Key> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (Key key : keys) {
+            if (match(key)) {
+                // the batch ran out before the queue did
+                synchronized (this) {
+                    pending.add(key);
+                }
+                schedule();
+            }
+        }
+    }
+
+    // books from the head of one queue, returns true if it stopped with patients left that might
+    // still be bookable
+    private boolean match(Key key) {
+        int booked = 0;
+        while (booked < batchSize) {
+            String patientName = head(key);
+            if (patientName == null) {
+                return false;
+            }
+            Reservation reservation;
+            try {
+                if (holdsAppointment(patientName, key.vaccineName)) {
+                    // booked since they joined, by hand or from another of their queues
+                    leaveVaccine(patientName, key.vaccineName);
+                    continue;
+                }
+                reservation = reserveEngine.reserve(patientName, key.date, key.vaccineName);
+            } catch (SQLException e) {
+                e.printStackTrace();
+                return false;
+            }
+            if (!reservation.isBooked()) {
+                return false;
+            }
+            leaveVaccine(patientName, key.vaccineName);
+            matched.incrementAndGet();
+            booked++;
+        }
+        return head(key) != null;
+    }
+
+    private synchronized String head(Key key) {
+        Map<String, LinkedHashSet<String>> day = queues.get(key.date);
+        LinkedHashSet<String> queue = day == null ? null : day.get(key.vaccineName);
+        if (queue == null || queue.isEmpty()) {
+            return null;
+        }
+        return queue.iterator().next();
+    }
+
+    private synchronized boolean remove(Key key, String patientName) {
+        Map<String, LinkedHashSet<String>> day = queues.get(key.date);
+        if (day == null) {
+            return false;
+        }
+        LinkedHashSet<String> queue = day.get(key.vaccineName);
+        if (queue == null || !queue.remove(patientName)) {
+            return false;
+        }
+        if (queue.isEmpty()) {
+            day.remove(key.vaccineName);
+            queueCount--;
+            if (day.isEmpty()) {
+                queues.remove(key.date);
+            }
+        }
+        return true;
+    }
+
+    // removes the patient from every queue, or every queue for one vaccine, returns how many
+    private int leaveWhere(String patientName, String vaccineName) {
+        List<Key> keys = new ArrayList<>();
+        for (Map.Entry<Date, Map<String, LinkedHashSet<String>>> day : queues.entrySet()) {
+            for (Map.Entry<String, LinkedHashSet<String>> queue : day.getValue().entrySet()) {
+                if ((vaccineName == null || queue.getKey().equals(vaccineName))
+                        && queue.getValue().contains(patientName)) {
+                    keys.add(new Key(day.getKey(), queue.getKey()));
+                }
+            }
+        }
+        for (Key key : keys) {
+            remove(key, patientName);
+        }
+        return keys.size();
+    }
+
+    // nobody can be booked for a date that has passed
+    private void dropPast() {
+        Map<Date, Map<String, LinkedHashSet<String>>> past = queues.headMap(Date.valueOf(LocalDate.now()));
+        for (Map<String, LinkedHashSet<String>> day : past.values()) {
+            queueCount -= day.size();
+        }
+        past.clear();
+    }
+}
@@ -0,0 +1,114 @@
+package scheduler.session;
+
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of one client of the scheduler: who is logged in and where command output goes.
+ * It is always true that at most one of caregiver and patient is not null.
+ */
+public class Session {
+
+    private static final AtomicLong ids = new AtomicLong();
+
+    private final long id = ids.incrementAndGet();
+    private final PrintWriter out;
+    // batch sessions get no prompt and flush only when done
+    private final boolean interactive;
+    private Caregiver caregiver = null;
+    private Patient patient = null;
+    // token of the current login in the session store, null when nobody is logged in
+    private String token = null;
+    // set when a command reports an error, so tools can count failures without parsing output
+    private boolean failed = false;
+
+    public Session(PrintWriter out) {
+        this(out, true);
+    }
+
+    public Session(PrintWriter out, boolean interactive) {
+        this.out = out;
+        this.interactive = interactive;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public PrintWriter getOut() {
+        return out;
+    }
+
+    public void println(String line) {
+        out.println(line);
+    }
+
+    public void println() {
+        out.println();
+    }
+
+    // prints an error message and marks the current command as failed
+    public void fail(String line) {
+        failed = true;
+        out.println(line);
+    }
+
+    // returns whether a command failed since the last call, and clears the flag
+    public boolean takeFailure() {
+        boolean result = failed;
+        failed = false;
+        return result;
+    }
+
+    public void prompt() {
+        if (!interactive) {
+            return;
+        }
+        out.print("> ");
+        out.flush();
+    }
+
+    public boolean isLoggedIn() {
+        return caregiver != null || patient != null;
+    }
+
+    public String getUsername() {
+        if (patient != null) {
+            return patient.getUsername();
+        }
+        return caregiver == null ? null : caregiver.getUsername();
+    }
+
+    public Caregiver getCaregiver() {
+        return caregiver;
+    }
+
+    public Patient getPatient() {
+        return patient;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void login(Patient patient, String token) {
+        this.patient = patient;
+        this.caregiver = null;
+        this.token = token;
+    }
+
+    public void login(Caregiver caregiver, String token) {
+        this.caregiver = caregiver;
+        this.patient = null;
+        this.token = token;
+    }
+
+    public void logout() {
+        this.caregiver = null;
+        this.patient = null;
+        this.token = null;
+    }
+}
@@ -0,0 +1,113 @@
+package scheduler.session;
+
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.util.Config;
+import scheduler.util.Util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Logged-in users keyed by an opaque token handed out at login, so a returning user can resume
+ * with the token instead of paying for a database lookup and a PBKDF2 derivation. Entries expire
+ * SessionTtlMillis after their last use, and once MaxSessions are held the least recently used
+ * one is dropped.
+ */
+public class SessionStore {
+
+    private static final SessionStore instance = new SessionStore(
+            Config.getInt("MaxSessions", 10_000), Config.getLong("SessionTtlMillis", 30 * 60 * 1000));
+
+    // one logged-in user; exactly one of patient and caregiver is set
+    public static final class Login {
+        private final Patient patient;
+        private final Caregiver caregiver;
+        private long expiresAt;
+
+        private Login(Patient patient, Caregiver caregiver) {
+            this.patient = patient;
+            this.caregiver = caregiver;
+        }
+
+        public Patient getPatient() {
+            return patient;
+        }
+
+        public Caregiver getCaregiver() {
+            return caregiver;
+        }
+    }
+
+    private final int maxSessions;
+    private final long ttlMillis;
+    // guarded by this; in access order so the eldest entry is the least recently used
+    private final LinkedHashMap<String, Login> sessions;
+
+    public SessionStore(int maxSessions, long ttlMillis) {
+        this.maxSessions = maxSessions;
+        this.ttlMillis = ttlMillis;
+        this.sessions = new LinkedHashMap<String, Login>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Login> eldest) {
+                return size() > SessionStore.this.maxSessions;
+            }
+        };
+    }
+
+    public static SessionStore getInstance() {
+        return instance;
+    }
+
+    public String open(Patient patient) {
+        return put(new Login(patient, null));
+    }
+
+    public String open(Caregiver caregiver) {
+        return put(new Login(null, caregiver));
+    }
+
+    // returns null if the token is unknown or has expired; a successful resume extends the session
+    public synchronized Login resume(String token) {
+        Login login = sessions.get(token);
+        if (login == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        if (login.expiresAt <= now) {
+            sessions.remove(token);
+            return null;
+        }
+        login.expiresAt = now + ttlMillis;
+        return login;
+    }
+
+    public synchronized void close(String token) {
+        sessions.remove(token);
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    private synchronized String put(Login login) {
+        evictExpired();
+        String token = Util.generateToken();
+        login.expiresAt = System.currentTimeMillis() + ttlMillis;
+        sessions.put(token, login);
+        return token;
+    }
+
+    // the least recently used entries sit at the front, so expired ones are found there first
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Login> logins = sessions.values().iterator();
+        while (logins.hasNext()) {
+            if (logins.next().expiresAt > now) {
+                break;
+            }
+            logins.remove();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package scheduler.tools;
+
+import scheduler.util.Util;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.SecureRandom;
+
+/**
+ * Compares the per-login hashing cost of the original Util.generateHash, which looked up the
+ * SecretKeyFactory and built a SecureRandom on every call, with the current thread-local version.
+ * Usage: HashBench [iterations]
+ */
+public class HashBench {
+
+    private static volatile byte[] sink;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        String password = "Passw0rd!";
+
+        // warm up both paths so the JIT has compiled them before we time anything
+        run(iterations / 10, password, true);
+        run(iterations / 10, password, false);
+
+        double legacy = run(iterations, password, true);
+        double current = run(iterations, password, false);
+        System.out.printf("salt + hash, legacy:  %8.0f ns/op%n", legacy);
+        System.out.printf("salt + hash, current: %8.0f ns/op%n", current);
+        System.out.printf("speedup: %.2fx%n", legacy / current);
+    }
+
+    private static double run(int iterations, String password, boolean legacy) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            if (legacy) {
+                sink = legacyHash(password, legacySalt());
+            } else {
+                sink = Util.generateHash(password, Util.generateSalt());
+            }
+        }
+        return (System.nanoTime() - start) / (double) iterations;
+    }
+
+    // the implementation Util used before hashing state was cached per thread
+    private static byte[] legacySalt() {
+        SecureRandom random = new SecureRandom();
+        byte[] salt = new byte[16];
+        random.nextBytes(salt);
+        return salt;
+    }
+
+    private static byte[] legacyHash(String password, byte[] salt) throws Exception {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 10, 16);
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+        return factory.generateSecret(spec).getEncoded();
+    }
+}
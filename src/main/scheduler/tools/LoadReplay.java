@@ -0,0 +1,203 @@
+package scheduler.tools;
+
+import scheduler.Scheduler;
+import scheduler.cache.VaccineInventory;
+import scheduler.command.Tokenizer;
+import scheduler.session.Session;
+import scheduler.util.Config;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Replays recorded command streams with many concurrent simulated users and reports throughput,
+ * latency percentiles and error counts per command.
+ * Usage:
+ *   LoadReplay generate <recording>
+ *   LoadReplay run <recording> <users> <scratch database> [rounds]
+ * A recording is what RecordFile captures: lines of session-id TAB command. Each recorded session
+ * is a script, and simulated user u runs script u % scripts, round after round. In a script,
+ * ${user} is replaced by a name unique to the user and round and ${date} by one of ReplayDays
+ * dates from ReplayStartDate, so recordings can be written to not collide with themselves.
+ * The run creates and migrates a scratch database and never touches the one in DBPath.
+ */
+public class LoadReplay {
+
+    private static final String[] TEMPLATE = {
+            "1\tcreate_caregiver cg_${user} Load#Pass1",
+            "1\tlogin_caregiver cg_${user} Load#Pass1",
+            "1\tupload_availability ${date}",
+            "1\tadd_doses loadvax 5",
+            "1\tsearch_caregiver_schedule ${date}",
+            "1\tlogout",
+            "2\tcreate_patient pt_${user} Load#Pass1",
+            "2\tlogin_patient pt_${user} Load#Pass1",
+            "2\tsearch_caregiver_schedule ${date}",
+            "2\treserve ${date} loadvax",
+            "2\tshow_appointments",
+            "2\tlogout",
+    };
+
+    // latencies of one command name, in nanoseconds
+    private static final class Samples {
+        private long[] values = new long[64];
+        private int size = 0;
+        private int errors = 0;
+
+        private void add(long nanos, boolean failed) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = nanos;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        private void addAll(Samples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i], false);
+            }
+            errors += other.errors;
+        }
+
+        // nearest-rank percentile, values must be sorted
+        private double percentileMillis(double p) {
+            int rank = (int) Math.ceil(p * size);
+            return values[Math.max(rank, 1) - 1] / 1e6;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("generate")) {
+            Files.write(Paths.get(args[1]), Arrays.asList(TEMPLATE), StandardCharsets.UTF_8);
+            System.out.println("Wrote " + TEMPLATE.length + " commands to " + args[1]);
+            return;
+        }
+        if ((args.length != 4 && args.length != 5) || !args[0].equals("run")) {
+            System.out.println("Usage: LoadReplay generate <recording>");
+            System.out.println("       LoadReplay run <recording> <users> <scratch database> [rounds]");
+            return;
+        }
+        List<List<String>> scripts = readScripts(Paths.get(args[1]));
+        int users = Integer.parseInt(args[2]);
+        Path database = Paths.get(args[3]);
+        int rounds = args.length == 5 ? Integer.parseInt(args[4]) : 1;
+        if (scripts.isEmpty()) {
+            System.out.println("No commands in " + args[1]);
+            return;
+        }
+        // must happen before anything loads ConnectionManager, which reads DBPath once
+        ScratchDatabase.create(database);
+        Scheduler.warmUp();
+
+        LocalDate startDate = LocalDate.parse(Config.get("ReplayStartDate", "2030-01-01"));
+        int days = Config.getInt("ReplayDays", 7);
+        List<Map<String, Samples>> perUser = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int u = 0; u < users; u++) {
+            final int user = u;
+            Map<String, Samples> samples = new TreeMap<>();
+            perUser.add(samples);
+            List<String> script = scripts.get(user % scripts.size());
+            String date = startDate.plusDays(user % days).toString();
+            Thread thread = new Thread(() -> {
+                Session session = new Session(new PrintWriter(Writer.nullWriter()), false);
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int round = 0; round < rounds; round++) {
+                    String name = "u" + user + "r" + round;
+                    for (String template : script) {
+                        String line = template.replace("${user}", name).replace("${date}", date);
+                        String[] tokens = Tokenizer.split(line);
+                        String command = tokens.length == 0 ? "(empty)" : tokens[0];
+                        long begin = System.nanoTime();
+                        boolean open = Scheduler.execute(session, line);
+                        long elapsed = System.nanoTime() - begin;
+                        samples.computeIfAbsent(command, k -> new Samples()).add(elapsed, session.takeFailure());
+                        if (!open) {
+                            break;
+                        }
+                    }
+                    // a script that does not log out would make the next round's login fail
+                    session.logout();
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        VaccineInventory.getInstance().flush();
+
+        report(merge(perUser), users, scripts.size(), rounds, seconds);
+    }
+
+    // groups the recording by session, keeping the order sessions first appear in
+    private static List<List<String>> readScripts(Path recording) throws IOException {
+        Map<String, List<String>> sessions = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(recording, StandardCharsets.UTF_8)) {
+            int tab = line.indexOf('\t');
+            if (tab < 0) {
+                continue;
+            }
+            sessions.computeIfAbsent(line.substring(0, tab), k -> new ArrayList<>()).add(line.substring(tab + 1));
+        }
+        return new ArrayList<>(sessions.values());
+    }
+
+    private static Map<String, Samples> merge(List<Map<String, Samples>> perUser) {
+        Map<String, Samples> merged = new TreeMap<>();
+        for (Map<String, Samples> samples : perUser) {
+            for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+                merged.computeIfAbsent(entry.getKey(), k -> new Samples()).addAll(entry.getValue());
+            }
+        }
+        return merged;
+    }
+
+    private static void report(Map<String, Samples> results, int users, int scripts, int rounds, double seconds) {
+        long commands = 0;
+        long errors = 0;
+        for (Samples samples : results.values()) {
+            commands += samples.size;
+            errors += samples.errors;
+        }
+        PrintStream out = System.out;
+        out.println("Users: " + users + ", scripts: " + scripts + ", rounds: " + rounds
+                + ", commands: " + commands + ", errors: " + errors);
+        out.printf("Elapsed: %.3f s, throughput: %.1f commands/s%n", seconds, commands / seconds);
+        out.printf("%-28s %8s %8s %10s %10s %10s%n", "command", "count", "errors", "p50 ms", "p99 ms", "p999 ms");
+        for (Map.Entry<String, Samples> entry : results.entrySet()) {
+            Samples samples = entry.getValue();
+            Arrays.sort(samples.values, 0, samples.size);
+            out.printf("%-28s %8d %8d %10.3f %10.3f %10.3f%n", entry.getKey(), samples.size, samples.errors,
+                    samples.percentileMillis(0.50), samples.percentileMillis(0.99),
+                    samples.percentileMillis(0.999));
+        }
+    }
+}
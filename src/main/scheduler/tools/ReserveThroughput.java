@@ -0,0 +1,110 @@
+package scheduler.tools;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.VaccineInventory;
+import scheduler.db.ConnectionManager;
+import scheduler.db.IdAllocator;
+import scheduler.db.PooledConnection;
+import scheduler.service.CaregiverAssignment;
+import scheduler.service.ReserveEngine;
+import scheduler.util.Config;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures reserve throughput when many patients book the same date at once.
+ * Usage: ReserveThroughput <date> <threads> <reservations per thread>
+ * It seeds its own caregivers, availability and vaccine into the database named by DBPath, so
+ * point DBPath at a scratch copy.
+ */
+public class ReserveThroughput {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 3) {
+            System.out.println("Usage: ReserveThroughput <date> <threads> <reservations per thread>");
+            return;
+        }
+        Date date = Date.valueOf(args[0]);
+        int threads = Integer.parseInt(args[1]);
+        int perThread = Integer.parseInt(args[2]);
+        int total = threads * perThread;
+
+        String prefix = "tp" + System.currentTimeMillis() + "_";
+        String vaccineName = prefix + "vaccine";
+        seed(prefix, vaccineName, date, total);
+
+        ReserveEngine engine = new ReserveEngine(new IdAllocator("Appointments",
+                "SELECT MAX(Appointment_id) FROM Appointments", 50), AvailabilityIndex.getInstance(),
+                VaccineInventory.getInstance(),
+                CaregiverAssignment.forName(Config.get("AssignmentStrategy", "least_loaded")));
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int worker = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        engine.reserve(prefix + "patient" + worker + "_" + i, date, vaccineName);
+                    }
+                } catch (SQLException e) {
+                    errors.incrementAndGet();
+                    e.printStackTrace();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            workers.add(thread);
+            thread.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : workers) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - begin) / 1e9;
+
+        System.out.println("Threads: " + threads + ", attempts: " + total);
+        System.out.println("Booked: " + engine.getBookedCount() + ", rejected: " + engine.getRejectedCount()
+                + ", errors: " + errors.get());
+        System.out.println("Retries: " + engine.getRetryCount() + ", lost slot claims: " + engine.getLostClaimCount());
+        VaccineInventory.getInstance().flush();
+        System.out.printf("Elapsed: %.3f s, throughput: %.1f reservations/s%n",
+                seconds, engine.getBookedCount() / seconds);
+    }
+
+    private static void seed(String prefix, String vaccineName, Date date, int slots) throws SQLException {
+        try (PooledConnection lease = ConnectionManager.lease()) {
+            Connection con = lease.getConnection();
+            con.setAutoCommit(false);
+            PreparedStatement caregiver = lease.prepareStatement("INSERT INTO Caregivers VALUES (?, ?, ?)");
+            PreparedStatement availability = lease.prepareStatement("INSERT INTO Availabilities VALUES (?, ?)");
+            for (int i = 0; i < slots; i++) {
+                String username = prefix + "caregiver" + i;
+                caregiver.setString(1, username);
+                caregiver.setBytes(2, new byte[16]);
+                caregiver.setBytes(3, new byte[16]);
+                caregiver.addBatch();
+                availability.setDate(1, date);
+                availability.setString(2, username);
+                availability.addBatch();
+            }
+            caregiver.executeBatch();
+            availability.executeBatch();
+            PreparedStatement vaccine = lease.prepareStatement("INSERT INTO Vaccines VALUES (?, ?)");
+            vaccine.setString(1, vaccineName);
+            vaccine.setInt(2, slots);
+            vaccine.executeUpdate();
+            con.commit();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package scheduler.tools;
+
+import scheduler.db.MigrationRunner;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Points the scheduler at a new, empty SQLite file and migrates it to the current schema, for
+ * tools and benchmarks that must not touch the real database. ConnectionManager reads DBPath
+ * once, so create() has to run before anything else in the process uses the database.
+ */
+public class ScratchDatabase {
+
+    private ScratchDatabase() {
+    }
+
+    public static void create(Path database) throws IOException, SQLException {
+        if (Files.exists(database)) {
+            throw new IOException(database + " already exists, give a path for a new scratch database");
+        }
+        System.setProperty("DBPath", database.toString());
+        new MigrationRunner().migrate();
+    }
+}
@@ -1,41 +1,107 @@
 package scheduler.util;
 
+import scheduler.metrics.Metrics;
+
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 
 public class Util {
 
     // constants for handling password
     private static final int HASH_STRENGTH = 10;
     private static final int KEY_LENGTH = 16;
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA1";
+
+    // provider lookup and seeding are far more expensive than the hash itself at this strength,
+    // so each thread keeps its own factory and random generator (neither is thread safe)
+    private static final ThreadLocal<SecretKeyFactory> factories = ThreadLocal.withInitial(() -> {
+        try {
+            return SecretKeyFactory.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<SecureRandom> randoms = ThreadLocal.withInitial(SecureRandom::new);
 
     public static byte[] generateSalt() {
         // Generate a random cryptographic salt
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
-        random.nextBytes(salt);
+        randoms.get().nextBytes(salt);
         return salt;
     }
 
+    // opaque, URL-safe token with 256 bits of randomness
+    public static String generateToken() {
+        byte[] bytes = new byte[32];
+        randoms.get().nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    // No buffers are reused across calls: the returned hash is stored by callers, PBEKeySpec copies
+    // the exact-length password array it is given, and nearly all the allocation happens inside the
+    // provider, out of our reach
     public static byte[] generateHash(String password, byte[] salt) {
         // Specify the hash parameters
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, HASH_STRENGTH, KEY_LENGTH);
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, salt, HASH_STRENGTH, KEY_LENGTH);
+        // the spec keeps its own copy, so ours can be wiped right away
+        Arrays.fill(chars, '\0');
 
         // Generate the hash
-        SecretKeyFactory factory = null;
-        byte[] hash = null;
+        long start = System.nanoTime();
         try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            hash = factory.generateSecret(spec).getEncoded();
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
-            throw new IllegalStateException();
+            return factories.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            spec.clearPassword();
+            Metrics.PBKDF2.recordSince(start);
+        }
+    }
+
+    // edge cases: if password.length < 8 || (hasLowercase && hasUppercase) || (hasLetter && hasNumber) || (does not contain a special character)
+    public static boolean validPassword(String password) {
+        boolean hasLower = false;
+        boolean hasUpper = false;
+        boolean hasDigit = false;
+        boolean hasLetter = false;
+        boolean hasSpecial = false;
+
+        if (password.length() < 8) {
+            return false;
+        }
+
+        List<Character> special = new ArrayList<>();
+        special.add('!');
+        special.add('@');
+        special.add('#');
+        special.add('?');
+
+        for (char c : password.toCharArray()) {
+            if (special.contains(c)) {
+                hasSpecial = true;
+            }
+            if (Character.isLowerCase(c)) {
+                hasLower = true;
+            }
+            if (Character.isUpperCase(c)) {
+                hasUpper = true;
+            }
+            if (Character.isDigit(c)) {
+                hasDigit = true;
+            }
+            if (Character.isLetter(c)) {
+                hasLetter = true;
+            }
         }
-        return hash;
+        return (hasLower && hasUpper && hasDigit && hasLetter && hasSpecial);
     }
 
     public static byte[] trim(byte[] bytes)